@@ -0,0 +1,186 @@
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+public class AsyncDatabaseLibrary implements AutoCloseable {
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+    
+    // One in-flight call; synchronized so a late cancel can never reach a connection already handed to another call.
+    // Only the wait for a permit is interrupted: past it the call may be writing the journal, where an interrupt
+    // would close the channel, so cancelling the statement is the only way in.
+    private static class Call {
+        // Set while waiting for a permit
+        private Thread waiting;
+        private DatabaseManager.Lease lease;
+        private boolean cancelled;
+        
+        synchronized boolean start(Thread thread) {
+            this.waiting = thread;
+            return !cancelled;
+        }
+        
+        // Clears an interrupt that raced with the permit being granted
+        synchronized boolean acquired() {
+            waiting = null;
+            Thread.interrupted();
+            return !cancelled;
+        }
+        
+        synchronized void attach(DatabaseManager.Lease lease) {
+            this.lease = lease;
+        }
+        
+        synchronized void finish() {
+            lease = null;
+            waiting = null;
+        }
+        
+        synchronized void cancel() {
+            cancelled = true;
+            if (lease != null) {
+                lease.cancel();
+            }
+            if (waiting != null) {
+                waiting.interrupt();
+            }
+        }
+    }
+    
+    private final DatabaseLibrary library;
+    private final DatabaseManager dbManager;
+    private final ExecutorService executor;
+    // Caps the calls holding a connection; callers beyond it wait on a parked virtual thread, not a platform one
+    private final Semaphore permits;
+    private final Duration defaultTimeout;
+    
+    public AsyncDatabaseLibrary(DatabaseLibrary library) {
+        this(library, DEFAULT_MAX_CONCURRENCY, DEFAULT_TIMEOUT);
+    }
+    
+    public AsyncDatabaseLibrary(DatabaseLibrary library, int maxConcurrency, Duration defaultTimeout) {
+        this.library = library;
+        this.dbManager = DatabaseManager.getInstance();
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.defaultTimeout = defaultTimeout;
+    }
+    
+    public CompletableFuture<String> borrowBook(String isbn, String userId) {
+        return submit(() -> library.borrowBook(isbn, userId), defaultTimeout);
+    }
+    
+    public CompletableFuture<String> returnBook(String isbn, String userId) {
+        return submit(() -> library.returnBook(isbn, userId), defaultTimeout);
+    }
+    
+    public CompletableFuture<List<CartItemResult>> checkoutCart(String userId, List<String> isbns) {
+        return submit(() -> library.checkoutCart(userId, isbns), defaultTimeout);
+    }
+    
+    public CompletableFuture<List<CartItemResult>> returnCart(List<CartItem> items) {
+        return submit(() -> library.returnCart(items), defaultTimeout);
+    }
+    
+    public CompletableFuture<Book> getBook(String isbn) {
+        return submit(() -> library.getBook(isbn), defaultTimeout);
+    }
+    
+    public CompletableFuture<User> getUser(String userId) {
+        return submit(() -> library.getUser(userId), defaultTimeout);
+    }
+    
+    public CompletableFuture<List<Book>> searchBooks(String searchTerm) {
+        return submit(() -> library.searchBooks(searchTerm), defaultTimeout);
+    }
+    
+    public CompletableFuture<List<Book>> searchBooks(String searchTerm, int offset, int limit) {
+        return submit(() -> library.searchBooks(searchTerm, offset, limit), defaultTimeout);
+    }
+    
+    public CompletableFuture<List<Book>> fuzzySearchBooks(String searchTerm, int limit) {
+        return submit(() -> library.fuzzySearchBooks(searchTerm, limit), defaultTimeout);
+    }
+    
+    public CompletableFuture<Map<String, Integer>> getLibraryStatistics() {
+        return submit(library::getLibraryStatistics, defaultTimeout);
+    }
+    
+    public CompletableFuture<List<TransactionDetails>> getTransactionDetails(TransactionDAO.StatusFilter filter, int offset, int limit) {
+        return submit(() -> library.getTransactionDetails(filter, offset, limit), defaultTimeout);
+    }
+    
+    // Timing out or cancelling the returned future cancels the statement the call is running, or its wait for a permit
+    public <T> CompletableFuture<T> submit(Supplier<T> work, Duration timeout) {
+        Call call = new Call();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        
+        try {
+            executor.execute(() -> run(work, call, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        
+        result.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException || error instanceof CancellationException) {
+                call.cancel();
+            }
+        });
+        return timeout != null ? result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS) : result;
+    }
+    
+    private <T> void run(Supplier<T> work, Call call, CompletableFuture<T> result) {
+        if (!call.start(Thread.currentThread())) return;
+        
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            call.finish();
+            result.completeExceptionally(new CancellationException("Cancelled while waiting for a connection"));
+            return;
+        }
+        if (!call.acquired()) {
+            call.finish();
+            permits.release();
+            result.completeExceptionally(new CancellationException("Cancelled while waiting for a connection"));
+            return;
+        }
+        
+        DatabaseManager.Lease lease = null;
+        try {
+            lease = dbManager.leaseConnection();
+            call.attach(lease);
+            if (!result.isDone()) {
+                result.complete(work.get());
+            }
+        } catch (SQLException | RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            call.finish();
+            if (lease != null) {
+                lease.close();
+            }
+            permits.release();
+        }
+    }
+    
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(defaultTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.text.Normalizer;
+import java.util.*;
+
+public class AutocompleteIndex {
+    private static final int MAX_SUGGESTIONS = 50;
+    
+    private static class Entry {
+        private final String id;
+        private final String text;
+        private final String normalizedText;
+        private final List<String> keys;
+        private long popularity;
+        
+        Entry(String id, String text, String normalizedText, List<String> keys, long popularity) {
+            this.id = id;
+            this.text = text;
+            this.normalizedText = normalizedText;
+            this.keys = keys;
+            this.popularity = popularity;
+        }
+    }
+    
+    // Every word start of every entry maps to the entries that begin there
+    private final TreeMap<String, Set<Entry>> prefixTree;
+    private final Map<String, Entry> entriesById;
+    
+    public AutocompleteIndex() {
+        this.prefixTree = new TreeMap<>();
+        this.entriesById = new HashMap<>();
+    }
+    
+    public static String normalize(String text) {
+        if (text == null) return "";
+        
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+    
+    public void put(String id, String text, long popularity) {
+        if (id == null || text == null) return;
+        
+        Entry existing = entriesById.get(id);
+        if (existing != null) {
+            if (existing.text.equals(text)) {
+                existing.popularity = popularity;
+                return;
+            }
+            remove(id);
+        }
+        
+        String normalizedText = normalize(text);
+        if (normalizedText.isEmpty()) return;
+        
+        List<String> keys = new ArrayList<>();
+        keys.add(normalizedText);
+        for (int i = 1; i < normalizedText.length(); i++) {
+            if (normalizedText.charAt(i - 1) == ' ') {
+                keys.add(normalizedText.substring(i));
+            }
+        }
+        
+        Entry entry = new Entry(id, text, normalizedText, keys, popularity);
+        entriesById.put(id, entry);
+        for (String key : keys) {
+            prefixTree.computeIfAbsent(key, k -> new HashSet<>()).add(entry);
+        }
+    }
+    
+    public void remove(String id) {
+        Entry entry = entriesById.remove(id);
+        if (entry == null) return;
+        
+        for (String key : entry.keys) {
+            Set<Entry> bucket = prefixTree.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    prefixTree.remove(key);
+                }
+            }
+        }
+    }
+    
+    // Replaces the text of an entry while keeping its popularity
+    public void rename(String id, String text) {
+        Entry entry = entriesById.get(id);
+        put(id, text, entry != null ? entry.popularity : 0);
+    }
+    
+    public void addPopularity(String id, long delta) {
+        Entry entry = entriesById.get(id);
+        if (entry != null) {
+            entry.popularity = Math.max(0, entry.popularity + delta);
+        }
+    }
+    
+    public boolean contains(String id) {
+        return entriesById.containsKey(id);
+    }
+    
+    public int size() {
+        return entriesById.size();
+    }
+    
+    public void clear() {
+        prefixTree.clear();
+        entriesById.clear();
+    }
+    
+    // Most popular distinct texts having a word that starts with the prefix
+    public List<String> suggest(String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        limit = Math.min(limit, MAX_SUGGESTIONS);
+        
+        // Keys starting with the prefix sort between the prefix and prefix + Character.MAX_VALUE
+        SortedMap<String, Set<Entry>> range = prefixTree.subMap(normalizedPrefix, normalizedPrefix + Character.MAX_VALUE);
+        
+        Map<String, Entry> bestByText = new HashMap<>();
+        for (Set<Entry> bucket : range.values()) {
+            for (Entry entry : bucket) {
+                Entry best = bestByText.get(entry.normalizedText);
+                if (best == null || entry.popularity > best.popularity) {
+                    bestByText.put(entry.normalizedText, entry);
+                }
+            }
+        }
+        
+        Comparator<Entry> ranking = Comparator.<Entry>comparingLong(e -> e.popularity)
+                .thenComparing(e -> e.normalizedText, Comparator.reverseOrder());
+        PriorityQueue<Entry> topK = new PriorityQueue<>(limit + 1, ranking);
+        for (Entry entry : bestByText.values()) {
+            topK.offer(entry);
+            if (topK.size() > limit) {
+                topK.poll();
+            }
+        }
+        
+        LinkedList<String> suggestions = new LinkedList<>();
+        while (!topK.isEmpty()) {
+            suggestions.addFirst(topK.poll().text);
+        }
+        return new ArrayList<>(suggestions);
+    }
+}
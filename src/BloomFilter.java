@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+    
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int expectedInsertions;
+    private final double targetFalsePositiveRate;
+    
+    private final AtomicLong insertions = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        
+        this.expectedInsertions = expectedInsertions;
+        this.targetFalsePositiveRate = falsePositiveRate;
+        
+        // Standard sizing: m = -n ln(p) / (ln 2)^2, k = (m / n) ln 2
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * LN2));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+    
+    public void put(String key) {
+        if (key == null) return;
+        
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < hashCount; i++) {
+            int bitIndex = Math.floorMod(h1 + i * h2, bitCount);
+            setBit(bitIndex);
+        }
+        insertions.incrementAndGet();
+    }
+    
+    public boolean mightContain(String key) {
+        probes.incrementAndGet();
+        if (key == null) {
+            definiteMisses.incrementAndGet();
+            return false;
+        }
+        
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < hashCount; i++) {
+            int bitIndex = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get(bitIndex >>> 6) & (1L << bitIndex)) == 0) {
+                definiteMisses.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Called by the owner when a "might contain" answer turned out to be wrong
+    public void recordFalsePositive() {
+        falsePositives.incrementAndGet();
+    }
+    
+    private void setBit(int bitIndex) {
+        int wordIndex = bitIndex >>> 6;
+        long mask = 1L << bitIndex;
+        long word;
+        do {
+            word = bits.get(wordIndex);
+            if ((word & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(wordIndex, word, word | mask));
+    }
+    
+    // FNV-1a over the UTF-16 code units followed by a final avalanche mix
+    private static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+    
+    public long getInsertionCount() {
+        return insertions.get();
+    }
+    
+    public long getProbeCount() {
+        return probes.get();
+    }
+    
+    public long getDefiniteMissCount() {
+        return definiteMisses.get();
+    }
+    
+    public long getFalsePositiveCount() {
+        return falsePositives.get();
+    }
+    
+    public double getTargetFalsePositiveRate() {
+        return targetFalsePositiveRate;
+    }
+    
+    // Theoretical rate for the current fill level: (1 - e^(-kn/m))^k
+    public double getExpectedFalsePositiveRate() {
+        double exponent = -(double) hashCount * insertions.get() / bitCount;
+        return Math.pow(1 - Math.exp(exponent), hashCount);
+    }
+    
+    // Share of absent keys that were not filtered out
+    public double getObservedFalsePositiveRate() {
+        long fp = falsePositives.get();
+        long negatives = definiteMisses.get() + fp;
+        return negatives == 0 ? 0.0 : (double) fp / negatives;
+    }
+    
+    public boolean isOverCapacity() {
+        return insertions.get() > expectedInsertions;
+    }
+    
+    public String getSummary() {
+        return String.format("keys=%d/%d, bits=%d, hashes=%d, target FPP=%.4f, expected FPP=%.4f, " +
+                        "probes=%d, definite misses=%d, false positives=%d (observed FPP=%.4f)",
+                insertions.get(), expectedInsertions, bitCount, hashCount,
+                targetFalsePositiveRate, getExpectedFalsePositiveRate(),
+                probes.get(), definiteMisses.get(), falsePositives.get(), getObservedFalsePositiveRate());
+    }
+    
+    @Override
+    public String toString() {
+        return "BloomFilter{" + getSummary() + "}";
+    }
+}
@@ -7,11 +7,13 @@ public class Book {
     }
     
     private String isbn;
+    private long isbnKey;
     private String title;
     private String author;
     private String genre;
     private BookStatus status;
     private int publicationYear;
+    private long version;
     
     public Book(String isbn, String title, String author, String genre, int publicationYear) {
         if (isbn == null || isbn.trim().isEmpty()) {
@@ -25,6 +27,7 @@ public class Book {
         }
         
         this.isbn = isbn.trim();
+        this.isbnKey = Isbn.toKey(this.isbn);
         this.title = title.trim();
         this.author = author.trim();
         this.genre = (genre != null) ? genre.trim() : "Unknown";
@@ -40,6 +43,11 @@ public class Book {
         return isbn;
     }
     
+    // Numeric ISBN-13 lookup key, or Isbn.NO_KEY when the ISBN fails its checksum
+    public long getIsbnKey() {
+        return isbnKey;
+    }
+    
     public String getTitle() {
         return title;
     }
@@ -89,6 +97,15 @@ public class Book {
         this.status = status;
     }
     
+    // Row version this copy was read at; saving it fails if the stored row has moved on
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     public boolean isAvailable() {
         return status == BookStatus.AVAILABLE;
     }
@@ -2,21 +2,109 @@ import java.sql.*;
 import java.util.*;
 
 public class BookDAO {
+    private static final double DEFAULT_FILTER_FPP = 0.01;
+    private static final int MIN_FILTER_CAPACITY = 1024;
+    // After a failed first build, probes go to the table for this long before the next attempt
+    private static final long FILTER_RETRY_MILLIS = 30_000;
+    // Stays under SQLite's default limit on bound parameters
+    private static final int ISBN_BATCH_SIZE = 500;
+    
+    // Shared by all DAO instances so creates through any of them are visible
+    private static volatile BloomFilter isbnFilter;
+    private static volatile long isbnFilterRetryAt;
+    
     private DatabaseManager dbManager;
     
     public BookDAO() {
         this.dbManager = DatabaseManager.getInstance();
     }
     
+    private BloomFilter getIsbnFilter() {
+        BloomFilter filter = isbnFilter;
+        if (filter == null) {
+            synchronized (BookDAO.class) {
+                if (isbnFilter == null && System.currentTimeMillis() >= isbnFilterRetryAt) {
+                    rebuildIsbnFilter();
+                }
+                filter = isbnFilter;
+            }
+        }
+        return filter;
+    }
+    
+    public void rebuildIsbnFilter() {
+        double fpp = new SettingsDAO().getDoubleSetting("existence_filter_fpp", DEFAULT_FILTER_FPP);
+        if (fpp <= 0 || fpp >= 1) {
+            fpp = DEFAULT_FILTER_FPP;
+        }
+        
+        synchronized (BookDAO.class) {
+            // Leave headroom for books created after startup
+            BloomFilter filter = new BloomFilter(Math.max(MIN_FILTER_CAPACITY, getTotalBookCount() * 2), fpp);
+            
+            try (ResultSet rs = dbManager.executeQuery("SELECT isbn FROM books")) {
+                while (rs.next()) {
+                    filter.put(filterKey(rs.getString("isbn")));
+                }
+            } catch (SQLException e) {
+                // Without a complete key scan the new filter could report false negatives; the previous one,
+                // kept current by every create, is still safe to use
+                System.err.println("❌ Error building ISBN existence filter: " + e.getMessage() +
+                        (isbnFilter != null ? " - keeping the previous filter" : ""));
+                isbnFilterRetryAt = System.currentTimeMillis() + FILTER_RETRY_MILLIS;
+                return;
+            }
+            
+            isbnFilter = filter;
+            System.out.println("🔄 ISBN existence filter rebuilt: " + filter.getInsertionCount() + " keys");
+        }
+    }
+    
+    // Under the rebuild's lock, so a rebuild either scans the committed row or is in place before the put
+    private static void addToIsbnFilter(String isbn) {
+        synchronized (BookDAO.class) {
+            BloomFilter filter = isbnFilter;
+            if (filter != null) {
+                filter.put(filterKey(isbn));
+            }
+        }
+    }
+    
+    public String getIsbnFilterSummary() {
+        BloomFilter filter = getIsbnFilter();
+        return filter != null ? filter.getSummary() : "not available";
+    }
+    
+    // Any spelling of a valid ISBN maps to the same filter entry
+    private static String filterKey(String isbn) {
+        long key = Isbn.toKey(isbn);
+        return key != Isbn.NO_KEY ? Long.toString(key) : isbn;
+    }
+    
+    // Valid ISBNs are matched on the numeric key; legacy rows failing the checksum only by their text
+    private static String isbnCondition(long key) {
+        return key != Isbn.NO_KEY ? "isbn_key = ?" : "isbn = ?";
+    }
+    
+    private static Object isbnParameter(String isbn, long key) {
+        return key != Isbn.NO_KEY ? (Object) key : isbn;
+    }
+    
     public boolean createBook(Book book) {
+        if (book.getIsbnKey() == Isbn.NO_KEY) {
+            System.err.println("❌ Invalid ISBN: " + book.getIsbn());
+            return false;
+        }
+        
         String sql = """
-            INSERT INTO books (isbn, title, author, genre, publication_year, status, updated_date)
-            VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            INSERT INTO books (isbn, isbn_key, title, author, genre, publication_year, status, updated_date)
+            VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
             """;
         
         try {
             dbManager.executeUpdate(sql,
                 book.getIsbn(),
+                book.getIsbnKey(),
                 book.getTitle(),
                 book.getAuthor(),
                 book.getGenre(),
@@ -24,6 +112,8 @@ public class BookDAO {
                 book.getStatus().toString()
             );
             dbManager.commit();
+            
+            addToIsbnFilter(book.getIsbn());
             System.out.println("✅ Book created in database: " + book.getTitle());
             return true;
             
@@ -44,18 +134,73 @@ public class BookDAO {
     }
     
     public Book findByIsbn(String isbn) {
-        String sql = "SELECT * FROM books WHERE isbn = ?";
+        BloomFilter filter = getIsbnFilter();
+        if (filter != null && !filter.mightContain(filterKey(isbn))) {
+            return null;
+        }
+        
+        long key = Isbn.toKey(isbn);
+        String sql = "SELECT * FROM books WHERE " + isbnCondition(key);
         
-        try (ResultSet rs = dbManager.executeQuery(sql, isbn)) {
+        try (ResultSet rs = dbManager.executeQuery(sql, isbnParameter(isbn, key))) {
             if (rs.next()) {
                 return mapResultSetToBook(rs);
             }
+            if (filter != null) {
+                filter.recordFalsePositive();
+            }
         } catch (SQLException e) {
             System.err.println("❌ Error finding book by ISBN: " + e.getMessage());
         }
         return null;
     }
     
+    // Keyed by the ISBN as the caller spelled it; ISBNs with no matching book are left out
+    public Map<String, Book> findByIsbns(Collection<String> isbns) {
+        Map<Long, List<String>> requestedByKey = new HashMap<>();
+        List<String> legacyIsbns = new ArrayList<>();
+        for (String isbn : isbns) {
+            long key = Isbn.toKey(isbn);
+            if (key != Isbn.NO_KEY) {
+                requestedByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(isbn);
+            } else if (isbn != null) {
+                legacyIsbns.add(isbn);
+            }
+        }
+        
+        Map<String, Book> books = new HashMap<>();
+        try {
+            List<Object> keys = new ArrayList<>(requestedByKey.keySet());
+            for (int start = 0; start < keys.size(); start += ISBN_BATCH_SIZE) {
+                List<Object> batch = keys.subList(start, Math.min(start + ISBN_BATCH_SIZE, keys.size()));
+                String sql = "SELECT * FROM books WHERE isbn_key IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                try (ResultSet rs = dbManager.executeQuery(sql, batch.toArray())) {
+                    while (rs.next()) {
+                        Book book = mapResultSetToBook(rs);
+                        for (String requested : requestedByKey.get(rs.getLong("isbn_key"))) {
+                            books.put(requested, book);
+                        }
+                    }
+                }
+            }
+            
+            for (int start = 0; start < legacyIsbns.size(); start += ISBN_BATCH_SIZE) {
+                List<String> batch = legacyIsbns.subList(start, Math.min(start + ISBN_BATCH_SIZE, legacyIsbns.size()));
+                String sql = "SELECT * FROM books WHERE isbn IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                try (ResultSet rs = dbManager.executeQuery(sql, batch.toArray())) {
+                    while (rs.next()) {
+                        Book book = mapResultSetToBook(rs);
+                        books.put(book.getIsbn(), book);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error finding books by ISBN: " + e.getMessage());
+        }
+        
+        return books;
+    }
+    
     public List<Book> findAll() {
         String sql = "SELECT * FROM books ORDER BY title";
         List<Book> books = new ArrayList<>();
@@ -135,12 +280,59 @@ public class BookDAO {
         return findByStatus(Book.BookStatus.AVAILABLE);
     }
     
+    // Projections read only the listed columns and are served by covering indexes
+    public List<BookSummary> findAllSummaries() {
+        String sql = "SELECT isbn, title, author, status FROM books ORDER BY title";
+        List<BookSummary> summaries = new ArrayList<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql)) {
+            while (rs.next()) {
+                summaries.add(mapResultSetToBookSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving book summaries: " + e.getMessage());
+        }
+        
+        return summaries;
+    }
+    
+    public List<BookSummary> findSummariesByStatus(Book.BookStatus status) {
+        String sql = "SELECT isbn, title, author, status FROM books WHERE status = ? ORDER BY title";
+        List<BookSummary> summaries = new ArrayList<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, status.toString())) {
+            while (rs.next()) {
+                summaries.add(mapResultSetToBookSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving book summaries by status: " + e.getMessage());
+        }
+        
+        return summaries;
+    }
+    
+    public Map<String, Integer> getGenreCounts() {
+        String sql = "SELECT genre, COUNT(*) as count FROM books GROUP BY genre ORDER BY count DESC";
+        Map<String, Integer> genreCounts = new LinkedHashMap<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql)) {
+            while (rs.next()) {
+                genreCounts.put(rs.getString("genre"), rs.getInt("count"));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error counting books by genre: " + e.getMessage());
+        }
+        
+        return genreCounts;
+    }
+    
+    // Saves only if the row is still at the version the book was read with; throws OptimisticLockException otherwise
     public boolean updateBook(Book book) {
         String sql = """
             UPDATE books 
             SET title = ?, author = ?, genre = ?, publication_year = ?, 
-                status = ?, updated_date = CURRENT_TIMESTAMP
-            WHERE isbn = ?
+                status = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP
+            WHERE isbn = ? AND version = ?
             """;
         
         try (PreparedStatement stmt = dbManager.getConnection().prepareStatement(sql)) {
@@ -150,18 +342,24 @@ public class BookDAO {
             stmt.setInt(4, book.getPublicationYear());
             stmt.setString(5, book.getStatus().toString());
             stmt.setString(6, book.getIsbn());
+            stmt.setLong(7, book.getVersion());
             
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
                 dbManager.commit();
+                book.setVersion(book.getVersion() + 1);
                 System.out.println("✅ Book updated: " + book.getTitle());
                 return true;
-            } else {
-                System.err.println("❌ No book found with ISBN: " + book.getIsbn());
-                return false;
             }
             
+            Long currentVersion = dbManager.findRowVersion("books", "isbn", book.getIsbn());
+            if (currentVersion != null) {
+                throw new OptimisticLockException("Book", book.getIsbn(), book.getVersion(), currentVersion);
+            }
+            System.err.println("❌ No book found with ISBN: " + book.getIsbn());
+            return false;
+            
         } catch (SQLException e) {
             try {
                 dbManager.rollback();
@@ -174,10 +372,11 @@ public class BookDAO {
     }
     
     public boolean updateBookStatus(String isbn, Book.BookStatus status) {
-        String sql = "UPDATE books SET status = ?, updated_date = CURRENT_TIMESTAMP WHERE isbn = ?";
+        long key = Isbn.toKey(isbn);
+        String sql = "UPDATE books SET status = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP WHERE " + isbnCondition(key);
         
         try {
-            dbManager.executeUpdate(sql, status.toString(), isbn);
+            dbManager.executeUpdate(sql, status.toString(), isbnParameter(isbn, key));
             dbManager.commit();
             System.out.println("✅ Book status updated to " + status + " for ISBN: " + isbn);
             return true;
@@ -193,6 +392,41 @@ public class BookDAO {
         }
     }
     
+    // Joins the caller's transaction: marks the book BORROWED only if it is still AVAILABLE, returning null otherwise
+    public Book claimForCheckout(String isbn) throws SQLException {
+        return claimForCheckout(isbn, Book.BookStatus.AVAILABLE);
+    }
+    
+    // A RESERVED copy is claimed this way when the patron it is held for picks it up
+    public Book claimForCheckout(String isbn, Book.BookStatus expected) throws SQLException {
+        long key = Isbn.toKey(isbn);
+        String sql = "UPDATE books SET status = 'BORROWED', version = version + 1, updated_date = CURRENT_TIMESTAMP WHERE " +
+                isbnCondition(key) + " AND status = ? RETURNING *";
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, isbnParameter(isbn, key), expected.toString())) {
+            return rs.next() ? mapResultSetToBook(rs) : null;
+        }
+    }
+    
+    // Joins the caller's transaction; false if the book was not in the expected status
+    public boolean moveStatus(String storedIsbn, Book.BookStatus from, Book.BookStatus to) throws SQLException {
+        String sql = "UPDATE books SET status = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP WHERE isbn = ? AND status = ?";
+        return dbManager.executeUpdate(sql, to.toString(), storedIsbn, from.toString()) > 0;
+    }
+    
+    // Joins the caller's transaction: puts a borrowed book back on the shelf, false if it was not borrowed
+    public boolean releaseFromCheckout(String storedIsbn) throws SQLException {
+        String sql = "UPDATE books SET status = 'AVAILABLE', version = version + 1, updated_date = CURRENT_TIMESTAMP WHERE isbn = ? AND status = 'BORROWED'";
+        return dbManager.executeUpdate(sql, storedIsbn) > 0;
+    }
+    
+    // Joins the caller's transaction: write-behind's net status change for a book over one batch. The version only
+    // goes up, to at least the one the read model already handed out; false if the book was not in the expected status.
+    public boolean applyStatus(String storedIsbn, Book.BookStatus from, Book.BookStatus to, long version) throws SQLException {
+        String sql = "UPDATE books SET status = ?, version = MAX(version + 1, ?), updated_date = CURRENT_TIMESTAMP WHERE isbn = ? AND status = ?";
+        return dbManager.executeUpdate(sql, to.toString(), version, storedIsbn, from.toString()) > 0;
+    }
+    
     public boolean deleteBook(String isbn) {
         // First check if book is currently borrowed
         Book book = findByIsbn(isbn);
@@ -201,10 +435,11 @@ public class BookDAO {
             return false;
         }
         
-        String sql = "DELETE FROM books WHERE isbn = ?";
+        long key = Isbn.toKey(isbn);
+        String sql = "DELETE FROM books WHERE " + isbnCondition(key);
         
         try (PreparedStatement stmt = dbManager.getConnection().prepareStatement(sql)) {
-            stmt.setString(1, isbn);
+            stmt.setObject(1, isbnParameter(isbn, key));
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
@@ -319,10 +554,20 @@ public class BookDAO {
     }
     
     public boolean bookExists(String isbn) {
-        String sql = "SELECT 1 FROM books WHERE isbn = ? LIMIT 1";
+        BloomFilter filter = getIsbnFilter();
+        if (filter != null && !filter.mightContain(filterKey(isbn))) {
+            return false;
+        }
+        
+        long key = Isbn.toKey(isbn);
+        String sql = "SELECT 1 FROM books WHERE " + isbnCondition(key) + " LIMIT 1";
         
-        try (ResultSet rs = dbManager.executeQuery(sql, isbn)) {
-            return rs.next();
+        try (ResultSet rs = dbManager.executeQuery(sql, isbnParameter(isbn, key))) {
+            boolean exists = rs.next();
+            if (!exists && filter != null) {
+                filter.recordFalsePositive();
+            }
+            return exists;
         } catch (SQLException e) {
             System.err.println("❌ Error checking book existence: " + e.getMessage());
             return false;
@@ -352,10 +597,20 @@ public class BookDAO {
         
         Book book = new Book(isbn, title, author, genre, year);
         book.setStatus(Book.BookStatus.valueOf(statusStr));
+        book.setVersion(rs.getLong("version"));
         
         return book;
     }
     
+    private BookSummary mapResultSetToBookSummary(ResultSet rs) throws SQLException {
+        return new BookSummary(
+            rs.getString("isbn"),
+            rs.getString("title"),
+            rs.getString("author"),
+            Book.BookStatus.valueOf(rs.getString("status"))
+        );
+    }
+    
     public void insertSampleBooks() {
         Book[] sampleBooks = {
             new Book("978-0-13-468599-1", "Clean Code", "Robert C. Martin", "Programming", 2008),
@@ -364,8 +619,8 @@ public class BookDAO {
             new Book("978-0-596-52068-7", "Head First Design Patterns", "Eric Freeman", "Programming", 2004),
             new Book("978-0-134-68514-4", "Java: The Complete Reference", "Herbert Schildt", "Programming", 2020),
             new Book("978-0-13-235088-4", "Introduction to Algorithms", "Thomas H. Cormen", "Computer Science", 2009),
-            new Book("978-0-307-88789-6", "The Lean Startup", "Eric Ries", "Business", 2011),
-            new Book("978-0-7432-7357-1", "The 7 Habits of Highly Effective People", "Stephen Covey", "Self-Help", 2004)
+            new Book("978-0-307-88789-4", "The Lean Startup", "Eric Ries", "Business", 2011),
+            new Book("978-0-7432-7357-2", "The 7 Habits of Highly Effective People", "Stephen Covey", "Self-Help", 2004)
         };
         
         int insertedCount = 0;
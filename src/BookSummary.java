@@ -0,0 +1,10 @@
+public record BookSummary(String isbn, String title, String author, Book.BookStatus status) {
+    
+    public boolean isAvailable() {
+        return status == Book.BookStatus.AVAILABLE;
+    }
+    
+    public String getFormattedInfo() {
+        return String.format("📚 %s by %s [%s]", title, author, status.toString().toLowerCase());
+    }
+}
@@ -2,15 +2,18 @@ import java.util.*;
 
 public class BorrowTransaction {
     public static final int DEFAULT_LOAN_PERIOD_DAYS = 14;
+    public static final double DEFAULT_FINE_PER_DAY = 0.50;
     
     private String transactionId;
     private String bookIsbn;
     private String userId;
-    private Date borrowDate;
-    private Date dueDate;
-    private Date returnDate;
+    // Epoch millis; returnTime is only meaningful once isReturned is set
+    private long borrowTime;
+    private long dueTime;
+    private long returnTime;
     private boolean isReturned;
     private double fineAmount;
+    private long version;
     
     public BorrowTransaction(String transactionId, String bookIsbn, String userId) {
         if (transactionId == null || transactionId.trim().isEmpty()) {
@@ -26,23 +29,42 @@ public class BorrowTransaction {
         this.transactionId = transactionId.trim();
         this.bookIsbn = bookIsbn.trim();
         this.userId = userId.trim();
-        this.borrowDate = new Date();
-        this.dueDate = calculateDueDate(borrowDate, DEFAULT_LOAN_PERIOD_DAYS);
-        this.returnDate = null;
+        this.borrowTime = System.currentTimeMillis();
+        this.dueTime = calculateDueDate(borrowTime, DEFAULT_LOAN_PERIOD_DAYS);
+        this.returnTime = 0;
         this.isReturned = false;
         this.fineAmount = 0.0;
     }
     
     public BorrowTransaction(String transactionId, String bookIsbn, String userId, int loanPeriodDays) {
         this(transactionId, bookIsbn, userId);
-        this.dueDate = calculateDueDate(borrowDate, loanPeriodDays);
+        this.dueTime = calculateDueDate(borrowTime, loanPeriodDays);
     }
     
-private Date calculateDueDate(Date borrowDate, int days) {
+    // Rehydration path: takes persisted values as they are, without recomputing dates or fines
+    private BorrowTransaction(String transactionId, String bookIsbn, String userId, long borrowTime,
+                              long dueTime, long returnTime, boolean isReturned, double fineAmount) {
+        this.transactionId = transactionId;
+        this.bookIsbn = bookIsbn;
+        this.userId = userId;
+        this.borrowTime = borrowTime;
+        this.dueTime = dueTime;
+        this.returnTime = returnTime;
+        this.isReturned = isReturned;
+        this.fineAmount = fineAmount;
+    }
+    
+    public static BorrowTransaction restore(String transactionId, String bookIsbn, String userId, long borrowTime,
+                                            long dueTime, long returnTime, boolean isReturned, double fineAmount) {
+        return new BorrowTransaction(transactionId, bookIsbn, userId, borrowTime,
+                                     dueTime, returnTime, isReturned, fineAmount);
+    }
+    
+private long calculateDueDate(long borrowTime, int days) {
         Calendar calendar = Calendar.getInstance();
-        calendar.setTime(borrowDate);
+        calendar.setTimeInMillis(borrowTime);
         calendar.add(Calendar.DAY_OF_MONTH, days);
-        return calendar.getTime();
+        return calendar.getTimeInMillis();
     }
     
     public String getTransactionId() {
@@ -58,15 +80,27 @@ private Date calculateDueDate(Date borrowDate, int days) {
     }
     
     public Date getBorrowDate() {
-        return new Date(borrowDate.getTime());
+        return new Date(borrowTime);
     }
     
     public Date getDueDate() {
-        return new Date(dueDate.getTime());
+        return new Date(dueTime);
+    }
+    
+    public long getBorrowTime() {
+        return borrowTime;
+    }
+    
+    public long getDueTime() {
+        return dueTime;
+    }
+    
+    public long getReturnTime() {
+        return returnTime;
     }
     
     public Date getReturnDate() {
-        return returnDate != null ? new Date(returnDate.getTime()) : null;
+        return isReturned ? new Date(returnTime) : null;
     }
     
     public boolean isReturned() {
@@ -81,43 +115,61 @@ private Date calculateDueDate(Date borrowDate, int days) {
         this.fineAmount = Math.max(0, fineAmount);
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     public boolean isOverdue() {
+        return isOverdue(System.currentTimeMillis());
+    }
+    
+    // Lets callers scanning many loans read the clock once
+    public boolean isOverdue(long now) {
         if (isReturned) {
-            return returnDate.after(dueDate);
+            return returnTime > dueTime;
         }
-        return new Date().after(dueDate);
+        return now > dueTime;
     }
     
     public long getDaysOverdue() {
-        if (!isOverdue()) return 0;
+        long now = System.currentTimeMillis();
+        if (!isOverdue(now)) return 0;
         
-        Date comparisonDate = isReturned ? returnDate : new Date();
-        long diffInMillis = comparisonDate.getTime() - dueDate.getTime();
+        long comparisonTime = isReturned ? returnTime : now;
+        long diffInMillis = comparisonTime - dueTime;
         return diffInMillis / (1000 * 60 * 60 * 24);
     }
     
     public long getDaysUntilDue() {
         if (isReturned) return 0;
         
-        long diffInMillis = dueDate.getTime() - new Date().getTime();
+        long diffInMillis = dueTime - System.currentTimeMillis();
         return Math.max(0, diffInMillis / (1000 * 60 * 60 * 24));
     }
     
     public void markAsReturned() {
+        markAsReturned(DEFAULT_FINE_PER_DAY);
+    }
+    
+    public void markAsReturned(double finePerDay) {
         if (!isReturned) {
-            this.returnDate = new Date();
+            this.returnTime = System.currentTimeMillis();
             this.isReturned = true;
             
             if (isOverdue()) {
-                calculateFine();
+                calculateFine(finePerDay);
             }
         }
     }
     
-    private void calculateFine() {
+    private void calculateFine(double finePerDay) {
         long daysOverdue = getDaysOverdue();
         if (daysOverdue > 0) {
-            this.fineAmount = daysOverdue * 0.50;
+            this.fineAmount = daysOverdue * finePerDay;
         }
     }
     
@@ -155,12 +207,12 @@ private Date calculateDueDate(Date borrowDate, int days) {
         
         return String.format("%s Transaction %s - Book: %s | User: %s | Due: %s%s",
                 statusIcon, transactionId, bookIsbn, userId, 
-                formatDate(dueDate), fineInfo);
+                formatDate(dueTime), fineInfo);
     }
     
-    private String formatDate(Date date) {
+    private String formatDate(long time) {
         Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
+        cal.setTimeInMillis(time);
         return String.format("%02d/%02d/%d", 
                 cal.get(Calendar.MONTH) + 1,
                 cal.get(Calendar.DAY_OF_MONTH),
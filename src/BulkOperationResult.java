@@ -0,0 +1,7 @@
+public record BulkOperationResult(int processed, int applied, int skipped, int failed) {
+    
+    public String getFormattedInfo() {
+        return String.format("📦 Processed %d | Applied %d | Skipped %d | Failed %d",
+                processed, applied, skipped, failed);
+    }
+}
@@ -0,0 +1,2 @@
+public record CartItem(String isbn, String userId) {
+}
@@ -0,0 +1,6 @@
+public record CartItemResult(CartItem item, boolean success, String message, String transactionId) {
+    
+    public String getFormattedInfo() {
+        return String.format("%s %s (%s): %s", success ? "✅" : "❌", item.isbn(), item.userId(), message);
+    }
+}
@@ -0,0 +1,178 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// One change to the circulation state; a journal holds these in the order the database committed them
+public sealed interface CirculationEvent {
+    
+    long time();
+    
+    // Adds or replaces a book, status included
+    record BookChanged(long time, String isbn, String title, String author, String genre, int year,
+                       Book.BookStatus status) implements CirculationEvent {
+        
+        public static BookChanged of(Book book) {
+            return new BookChanged(System.currentTimeMillis(), book.getIsbn(), book.getTitle(), book.getAuthor(),
+                    book.getGenre(), book.getPublicationYear(), book.getStatus());
+        }
+    }
+    
+    record BookRemoved(long time, String isbn) implements CirculationEvent {}
+    
+    // Holds move copies between AVAILABLE and RESERVED without a loan changing
+    record BookStatusChanged(long time, String isbn, Book.BookStatus status) implements CirculationEvent {}
+    
+    // Adds or replaces a user's profile; borrowed books follow from the loan events
+    record UserChanged(long time, String userId, String name, String email, String phoneNumber,
+                       boolean active) implements CirculationEvent {
+        
+        public static UserChanged of(User user) {
+            return new UserChanged(System.currentTimeMillis(), user.getUserId(), user.getName(), user.getEmail(),
+                    user.getPhoneNumber(), user.isActive());
+        }
+    }
+    
+    // time is the borrow time
+    record BookBorrowed(long time, String transactionId, String isbn, String userId,
+                        long dueTime) implements CirculationEvent {
+        
+        public static BookBorrowed of(BorrowTransaction transaction) {
+            return new BookBorrowed(transaction.getBorrowTime(), transaction.getTransactionId(),
+                    transaction.getBookIsbn(), transaction.getUserId(), transaction.getDueTime());
+        }
+    }
+    
+    // time is the return time
+    record BookReturned(long time, String transactionId, String isbn, String userId,
+                        double fine) implements CirculationEvent {
+        
+        public static BookReturned of(BorrowTransaction transaction) {
+            return new BookReturned(transaction.getReturnTime(), transaction.getTransactionId(),
+                    transaction.getBookIsbn(), transaction.getUserId(), transaction.getFineAmount());
+        }
+    }
+    
+    // The nightly accrual's new fine on a loan still out
+    record FineAccrued(long time, String transactionId, double fine) implements CirculationEvent {}
+    
+    // Tags are part of the file format: append new ones, never renumber
+    byte BOOK_CHANGED = 1;
+    byte BOOK_REMOVED = 2;
+    byte BOOK_STATUS_CHANGED = 3;
+    byte USER_CHANGED = 4;
+    byte BOOK_BORROWED = 5;
+    byte BOOK_RETURNED = 6;
+    byte FINE_ACCRUED = 7;
+    
+    Book.BookStatus[] STATUSES = Book.BookStatus.values();
+    
+    // Writes the tag and fields; the buffer must have room, see maxEncodedSize
+    static void encode(CirculationEvent event, ByteBuffer buffer) {
+        switch (event) {
+            case BookChanged e -> {
+                buffer.put(BOOK_CHANGED).putLong(e.time());
+                putString(buffer, e.isbn());
+                putString(buffer, e.title());
+                putString(buffer, e.author());
+                putString(buffer, e.genre());
+                buffer.putInt(e.year()).put((byte) e.status().ordinal());
+            }
+            case BookRemoved e -> {
+                buffer.put(BOOK_REMOVED).putLong(e.time());
+                putString(buffer, e.isbn());
+            }
+            case BookStatusChanged e -> {
+                buffer.put(BOOK_STATUS_CHANGED).putLong(e.time());
+                putString(buffer, e.isbn());
+                buffer.put((byte) e.status().ordinal());
+            }
+            case UserChanged e -> {
+                buffer.put(USER_CHANGED).putLong(e.time());
+                putString(buffer, e.userId());
+                putString(buffer, e.name());
+                putString(buffer, e.email());
+                putString(buffer, e.phoneNumber());
+                buffer.put((byte) (e.active() ? 1 : 0));
+            }
+            case BookBorrowed e -> {
+                buffer.put(BOOK_BORROWED).putLong(e.time());
+                putString(buffer, e.transactionId());
+                putString(buffer, e.isbn());
+                putString(buffer, e.userId());
+                buffer.putLong(e.dueTime());
+            }
+            case BookReturned e -> {
+                buffer.put(BOOK_RETURNED).putLong(e.time());
+                putString(buffer, e.transactionId());
+                putString(buffer, e.isbn());
+                putString(buffer, e.userId());
+                buffer.putDouble(e.fine());
+            }
+            case FineAccrued e -> {
+                buffer.put(FINE_ACCRUED).putLong(e.time());
+                putString(buffer, e.transactionId());
+                buffer.putDouble(e.fine());
+            }
+        }
+    }
+    
+    // Reads one event written by encode; IllegalArgumentException if the bytes are not one
+    static CirculationEvent decode(ByteBuffer buffer) {
+        try {
+            byte tag = buffer.get();
+            long time = buffer.getLong();
+            return switch (tag) {
+                case BOOK_CHANGED -> new BookChanged(time, getString(buffer), getString(buffer), getString(buffer),
+                        getString(buffer), buffer.getInt(), STATUSES[buffer.get()]);
+                case BOOK_REMOVED -> new BookRemoved(time, getString(buffer));
+                case BOOK_STATUS_CHANGED -> new BookStatusChanged(time, getString(buffer), STATUSES[buffer.get()]);
+                case USER_CHANGED -> new UserChanged(time, getString(buffer), getString(buffer), getString(buffer),
+                        getString(buffer), buffer.get() != 0);
+                case BOOK_BORROWED -> new BookBorrowed(time, getString(buffer), getString(buffer), getString(buffer),
+                        buffer.getLong());
+                case BOOK_RETURNED -> new BookReturned(time, getString(buffer), getString(buffer), getString(buffer),
+                        buffer.getDouble());
+                case FINE_ACCRUED -> new FineAccrued(time, getString(buffer), buffer.getDouble());
+                default -> throw new IllegalArgumentException("Unknown event tag " + tag);
+            };
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated event", e);
+        }
+    }
+    
+    // Upper bound on encode's output: every char of a string is at most three UTF-8 bytes
+    static int maxEncodedSize(CirculationEvent event) {
+        return 64 + 3 * switch (event) {
+            case BookChanged e -> length(e.isbn()) + length(e.title()) + length(e.author()) + length(e.genre());
+            case BookRemoved e -> length(e.isbn());
+            case BookStatusChanged e -> length(e.isbn());
+            case UserChanged e -> length(e.userId()) + length(e.name()) + length(e.email()) + length(e.phoneNumber());
+            case BookBorrowed e -> length(e.transactionId()) + length(e.isbn()) + length(e.userId());
+            case BookReturned e -> length(e.transactionId()) + length(e.isbn()) + length(e.userId());
+            case FineAccrued e -> length(e.transactionId());
+        };
+    }
+    
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+    
+    // Short length prefix, -1 for null
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) return null;
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,580 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only log of circulation events in numbered segment files, plus snapshots that let old segments go.
+// Each record is [length][crc32 of sequence and payload][sequence][payload]; a torn tail is cut off on open.
+public class CirculationJournal implements AutoCloseable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int MAGIC = 0x434A524E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int FRAME_HEADER_BYTES = 16;
+    private static final int SNAPSHOT_CHUNK_BYTES = 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    
+    public record Replay(Library library, long sequence, long events, long elapsedMillis) {
+        
+        public double getEventsPerSecond() {
+            return events * 1000.0 / Math.max(1, elapsedMillis);
+        }
+    }
+    
+    private interface FrameHandler {
+        void frame(long sequence, ByteBuffer payload);
+    }
+    
+    private final Path directory;
+    private final long segmentBytes;
+    
+    // Appenders encode into pending; whoever syncs next swaps it for the spare and writes the whole batch
+    // with one force, so concurrent appenders share an fsync instead of queueing for one each
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 appendChecksum = new CRC32();
+    private long pendingFirstSequence;
+    private long lastSequence;
+    private volatile long durableSequence;
+    private boolean closed;
+    // Set when a batch could not be written; appends are refused until reseed() so no gap opens up behind it
+    private IOException failure;
+    
+    // Segment I/O runs on this thread only. An interrupt during FileChannel I/O closes the channel, so an appender
+    // being cancelled must never be the thread writing it.
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "circulation-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Guarded by syncLock
+    private FileChannel segment;
+    private long segmentSize;
+    private long syncCount;
+    
+    public CirculationJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+    
+    public CirculationJournal(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(HEADER_BYTES + FRAME_HEADER_BYTES, segmentBytes);
+        Files.createDirectories(directory);
+        
+        Path snapshot = latestSnapshot();
+        lastSequence = (snapshot != null) ? sequenceOf(snapshot, SNAPSHOT_PREFIX) : 0;
+        
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(lastSequence + 1);
+        } else {
+            recoverSegment(segments.get(segments.size() - 1));
+        }
+        durableSequence = lastSequence;
+    }
+    
+    // Durable once this returns; the event's sequence number
+    public long append(CirculationEvent event) throws IOException {
+        long sequence = enqueue(event);
+        sync(sequence);
+        return sequence;
+    }
+    
+    // One sync for the whole list, e.g. every loan of a cart; the last event's sequence number
+    public long appendAll(List<? extends CirculationEvent> events) throws IOException {
+        long sequence = 0;
+        for (CirculationEvent event : events) {
+            sequence = enqueue(event);
+        }
+        if (sequence > 0) {
+            sync(sequence);
+        }
+        return sequence;
+    }
+    
+    private long enqueue(CirculationEvent event) throws IOException {
+        int needed = FRAME_HEADER_BYTES + CirculationEvent.maxEncodedSize(event);
+        synchronized (appendLock) {
+            if (closed) throw new IOException("Circulation journal is closed");
+            if (failure != null) throw new IOException("Circulation journal stopped after a failed write and needs a reseed", failure);
+            if (pending.remaining() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            
+            long sequence = ++lastSequence;
+            if (pendingFirstSequence == 0) {
+                pendingFirstSequence = sequence;
+            }
+            writeFrame(pending, sequence, event, appendChecksum);
+            return sequence;
+        }
+    }
+    
+    private static void writeFrame(ByteBuffer buffer, long sequence, CirculationEvent event, CRC32 checksum) {
+        int start = buffer.position();
+        buffer.position(start + FRAME_HEADER_BYTES);
+        CirculationEvent.encode(event, buffer);
+        int length = buffer.position() - start - FRAME_HEADER_BYTES;
+        
+        buffer.putInt(start, length);
+        buffer.putLong(start + 8, sequence);
+        checksum.reset();
+        checksum.update(buffer.array(), buffer.arrayOffset() + start + 8, 8 + length);
+        buffer.putInt(start + 4, (int) checksum.getValue());
+    }
+    
+    // Writes and forces everything appended so far unless another thread's sync already covered the sequence
+    private void sync(long sequence) throws IOException {
+        if (durableSequence >= sequence) return;
+        synchronized (syncLock) {
+            if (durableSequence >= sequence) return;
+            
+            ByteBuffer batch;
+            long firstSequence;
+            long upTo;
+            synchronized (appendLock) {
+                if (failure != null) throw new IOException("Circulation journal stopped after a failed write and needs a reseed", failure);
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                firstSequence = pendingFirstSequence;
+                upTo = lastSequence;
+                pendingFirstSequence = 0;
+            }
+            
+            batch.flip();
+            try {
+                onWriter(() -> {
+                    if (segmentSize > HEADER_BYTES && segmentSize + batch.remaining() > segmentBytes) {
+                        segment.close();
+                        openSegment(firstSequence);
+                    }
+                    while (batch.hasRemaining()) {
+                        segmentSize += segment.write(batch);
+                    }
+                    segment.force(false);
+                });
+                syncCount++;
+            } catch (IOException e) {
+                synchronized (appendLock) {
+                    failure = e;
+                    pending.clear();
+                    pendingFirstSequence = 0;
+                }
+                System.err.println("❌ Circulation journal write failed after sequence " + durableSequence + ": " + e.getMessage());
+                throw e;
+            } finally {
+                batch.clear();
+            }
+            durableSequence = upTo;
+        }
+    }
+    
+    private interface SegmentIo {
+        void run() throws IOException;
+    }
+    
+    // Waits through interrupts and restores the caller's flag afterwards
+    private void onWriter(SegmentIo io) throws IOException {
+        Future<?> done = writer.submit(() -> {
+            io.run();
+            return null;
+        });
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    done.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException cause) throw cause;
+                    throw new IOException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    // Segments are named by the first sequence they hold, so replay can skip whole files
+    private void openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(fileName(SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.truncate(0);
+        writeHeader(segment);
+        segment.force(true);
+        segmentSize = HEADER_BYTES;
+    }
+    
+    // A crash mid-write leaves a partial or corrupt record at the end of the newest segment only
+    private void recoverSegment(Path path) throws IOException {
+        // Older segments end just before this one starts, even when a crash left it without a frame
+        lastSequence = Math.max(lastSequence, sequenceOf(path, SEGMENT_PREFIX) - 1);
+        segment = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = readFully(segment);
+        if (!hasHeader(buffer)) {
+            segment.close();
+            openSegment(sequenceOf(path, SEGMENT_PREFIX));
+            return;
+        }
+        
+        int end = readFrames(buffer, (sequence, payload) -> lastSequence = Math.max(lastSequence, sequence));
+        if (end < buffer.limit()) {
+            System.err.println("⚠️ Circulation journal: dropped " + (buffer.limit() - end) + " torn bytes from " + path.getFileName());
+            segment.truncate(end);
+            segment.force(true);
+        }
+        segment.position(end);
+        segmentSize = end;
+    }
+    
+    // Feeds every durable event after the given sequence to the consumer in order; the last sequence seen
+    public long replay(long afterSequence, Consumer<CirculationEvent> consumer) throws IOException {
+        long upTo = durableSequence;
+        long[] last = {afterSequence};
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && sequenceOf(segments.get(i + 1), SEGMENT_PREFIX) - 1 <= afterSequence) continue;
+            
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                buffer = readFully(channel);
+            } catch (NoSuchFileException e) {
+                // Compacted away by a snapshot since the listing
+                continue;
+            }
+            if (!hasHeader(buffer)) continue;
+            
+            readFrames(buffer, (sequence, payload) -> {
+                if (sequence <= afterSequence || sequence > upTo) return;
+                consumer.accept(CirculationEvent.decode(payload));
+                last[0] = sequence;
+            });
+        }
+        return last[0];
+    }
+    
+    // Latest snapshot, then the journal tail after it
+    public Replay rebuild() throws IOException {
+        long started = System.nanoTime();
+        Library library = new Library();
+        long[] events = {0};
+        Consumer<CirculationEvent> apply = event -> {
+            apply(library, event);
+            events[0]++;
+        };
+        
+        long sequence = 0;
+        Path snapshot = latestSnapshot();
+        if (snapshot != null) {
+            sequence = sequenceOf(snapshot, SNAPSHOT_PREFIX);
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                ByteBuffer buffer = readFully(channel);
+                if (!hasHeader(buffer)) throw new IOException("Corrupt snapshot " + snapshot.getFileName());
+                readFrames(buffer, (frameSequence, payload) -> apply.accept(CirculationEvent.decode(payload)));
+            }
+        }
+        sequence = replay(sequence, apply);
+        library.rebuildOverdueSchedule();
+        
+        return new Replay(library, sequence, events[0], (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    // Folds the journal into a new snapshot and deletes the segments and snapshots it makes redundant
+    public long snapshot() throws IOException {
+        Replay replay = rebuild();
+        writeSnapshot(replay.library(), replay.sequence());
+        return replay.sequence();
+    }
+    
+    // The library must hold exactly the state after the given sequence, e.g. one seeded from the database
+    // before any event was appended
+    public void writeSnapshot(Library library, long sequence) throws IOException {
+        Path target = directory.resolve(fileName(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        
+        List<BorrowTransaction> transactions = library.getAllTransactions();
+        // Closed loans first: replaying one frees its copy, which an open loan on the same book then takes again
+        transactions.sort(Comparator.comparing(BorrowTransaction::isReturned).reversed()
+                .thenComparingLong(BorrowTransaction::getBorrowTime));
+        
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(channel);
+            SnapshotWriter writer = new SnapshotWriter(channel, sequence);
+            for (User user : library.getAllUsers()) {
+                writer.write(CirculationEvent.UserChanged.of(user));
+            }
+            for (Book book : library.getAllBooks()) {
+                writer.write(CirculationEvent.BookChanged.of(book));
+            }
+            for (BorrowTransaction transaction : transactions) {
+                writer.write(CirculationEvent.BookBorrowed.of(transaction));
+                if (transaction.isReturned()) {
+                    writer.write(CirculationEvent.BookReturned.of(transaction));
+                }
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        
+        compact(sequence);
+        System.out.println("📸 Circulation snapshot written at sequence " + sequence);
+    }
+    
+    private static final class SnapshotWriter {
+        private final FileChannel channel;
+        private final long sequence;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_CHUNK_BYTES);
+        private final CRC32 checksum = new CRC32();
+        
+        SnapshotWriter(FileChannel channel, long sequence) {
+            this.channel = channel;
+            this.sequence = sequence;
+        }
+        
+        void write(CirculationEvent event) throws IOException {
+            if (buffer.remaining() < FRAME_HEADER_BYTES + CirculationEvent.maxEncodedSize(event)) {
+                flush();
+            }
+            writeFrame(buffer, sequence, event, checksum);
+        }
+        
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+    
+    // A segment is covered once the next one starts at or below sequence + 1; the newest is always kept
+    private void compact(long sequence) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (sequenceOf(segments.get(i + 1), SEGMENT_PREFIX) - 1 <= sequence) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+        for (Path snapshot : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(snapshot, SNAPSHOT_PREFIX) < sequence) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+    
+    // Replays one event onto the library; events arrive in the order the database committed them
+    public static void apply(Library library, CirculationEvent event) {
+        switch (event) {
+            case CirculationEvent.BookChanged e -> {
+                Book book = new Book(e.isbn(), e.title(), e.author(), e.genre(), e.year());
+                book.setStatus(e.status());
+                library.restoreBook(book);
+            }
+            case CirculationEvent.BookRemoved e -> library.removeBook(e.isbn());
+            case CirculationEvent.BookStatusChanged e -> {
+                Book book = library.getBook(e.isbn());
+                if (book != null) {
+                    book.setStatus(e.status());
+                }
+            }
+            case CirculationEvent.UserChanged e -> {
+                User user = new User(e.userId(), e.name(), e.email(), e.phoneNumber());
+                user.setActive(e.active());
+                library.restoreUser(user);
+            }
+            case CirculationEvent.BookBorrowed e -> library.restoreTransaction(BorrowTransaction.restore(
+                    e.transactionId(), e.isbn(), e.userId(), e.time(), e.dueTime(), 0, false, 0));
+            case CirculationEvent.BookReturned e -> {
+                // A journal started mid-loan has no borrow event to take the dates from
+                BorrowTransaction loan = library.getTransaction(e.transactionId());
+                long borrowTime = (loan != null) ? loan.getBorrowTime() : e.time();
+                long dueTime = (loan != null) ? loan.getDueTime() : e.time();
+                library.restoreTransaction(BorrowTransaction.restore(
+                        e.transactionId(), e.isbn(), e.userId(), borrowTime, dueTime, e.time(), true, e.fine()));
+            }
+            case CirculationEvent.FineAccrued e -> {
+                BorrowTransaction loan = library.getTransaction(e.transactionId());
+                if (loan != null && !loan.isReturned()) {
+                    loan.setFineAmount(e.fine());
+                }
+            }
+        }
+    }
+    
+    // Walks the frames from the buffer's position and returns the offset just past the last intact one
+    private static int readFrames(ByteBuffer buffer, FrameHandler handler) {
+        CRC32 checksum = new CRC32();
+        int limit = buffer.limit();
+        int end = buffer.position();
+        while (limit - end >= FRAME_HEADER_BYTES) {
+            int length = buffer.getInt(end);
+            if (length < 0 || length > limit - end - FRAME_HEADER_BYTES) break;
+            
+            checksum.reset();
+            checksum.update(buffer.array(), buffer.arrayOffset() + end + 8, 8 + length);
+            if ((int) checksum.getValue() != buffer.getInt(end + 4)) break;
+            
+            int payloadStart = end + FRAME_HEADER_BYTES;
+            buffer.limit(payloadStart + length).position(payloadStart);
+            handler.frame(buffer.getLong(end + 8), buffer);
+            buffer.limit(limit);
+            end = payloadStart + length;
+        }
+        buffer.position(end);
+        return end;
+    }
+    
+    private static ByteBuffer readFully(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) throw new IOException("Journal file too large: " + size + " bytes");
+        
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        // Positional reads leave the channel's own position, where appends continue, alone
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) break;
+        }
+        return buffer.flip();
+    }
+    
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+    
+    // Leaves the buffer positioned after the header when it is valid
+    private static boolean hasHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            return false;
+        }
+        buffer.position(HEADER_BYTES);
+        return true;
+    }
+    
+    private Path latestSnapshot() throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+    
+    private List<Path> listSegments() throws IOException {
+        return list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+    
+    // Zero-padded names sort in sequence order
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return paths;
+    }
+    
+    private static String fileName(String prefix, long sequence, String suffix) {
+        return String.format("%s%020d%s", prefix, sequence, suffix);
+    }
+    
+    private static long sequenceOf(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), prefix.length() + 20));
+    }
+    
+    // Recovers from a failed write: the library must hold the state after every event up to getLastSequence(),
+    // including those that were lost, e.g. one read back from the database. Appends continue in a fresh segment.
+    public void reseed(Library library) throws IOException {
+        synchronized (syncLock) {
+            long sequence;
+            synchronized (appendLock) {
+                if (failure == null) return;
+                sequence = lastSequence;
+            }
+            try {
+                segment.close();
+            } catch (IOException e) {
+                // The failed segment is left behind; the snapshot covers everything in it
+            }
+            writeSnapshot(library, sequence);
+            onWriter(() -> openSegment(sequence + 1));
+            synchronized (appendLock) {
+                failure = null;
+            }
+            durableSequence = sequence;
+        }
+    }
+    
+    public boolean isFailed() {
+        synchronized (appendLock) {
+            return failure != null;
+        }
+    }
+    
+    public boolean isEmpty() throws IOException {
+        synchronized (appendLock) {
+            return lastSequence == 0 && latestSnapshot() == null;
+        }
+    }
+    
+    public long getLastSequence() {
+        synchronized (appendLock) {
+            return lastSequence;
+        }
+    }
+    
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    public String getSummary() {
+        synchronized (syncLock) {
+            return String.format("sequence %d, %d syncs since open, current segment %d KB",
+                    durableSequence, syncCount, segmentSize / 1024);
+        }
+    }
+    
+    // Flushes whatever is still pending before closing the segment
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        synchronized (appendLock) {
+            if (closed) return;
+            closed = true;
+            sequence = lastSequence;
+        }
+        try {
+            sync(sequence);
+        } finally {
+            synchronized (syncLock) {
+                segment.close();
+            }
+            writer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// overdueLoans counts loans that came due in the bucket, overdueReturns late returns made in it
+public record CirculationRollup(RollupDAO.Granularity granularity, long bucketStart, String genre,
+                                int loans, int returns, int overdueLoans, int overdueReturns, double fines) {
+    
+    public String getFormattedInfo() {
+        // Buckets follow the local zone, so they are labelled in it too
+        String pattern = granularity == RollupDAO.Granularity.HOUR ? "yyyy-MM-dd HH:00" : "yyyy-MM-dd";
+        String bucket = DateTimeFormatter.ofPattern(pattern).format(Instant.ofEpochMilli(bucketStart).atZone(ZoneId.systemDefault()));
+        return String.format("📈 %s | %s | Loans %d | Returns %d | Became overdue %d | Returned late %d | Fines $%.2f",
+                bucket, genre, loans, returns, overdueLoans, overdueReturns, fines);
+    }
+}
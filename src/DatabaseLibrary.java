@@ -1,12 +1,61 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+// Stripe locks are held for the try block's extent and never referenced inside it
+@SuppressWarnings("try")
 public class DatabaseLibrary {
+    private static final int LOCK_STRIPES = 64;
+    public static final int DEFAULT_CONFLICT_ATTEMPTS = 3;
+    public static final int DEFAULT_HOLD_PICKUP_DAYS = 3;
+    public static final int DEFAULT_OVERDUE_CHECK_INTERVAL_MILLIS = 60_000;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    public static final int DEFAULT_WRITE_BEHIND_LAG_MILLIS = 250;
+    public static final int DEFAULT_WRITE_BEHIND_CAPACITY = 10_000;
+    private static final String WRITE_BEHIND_BUSY = "Library is catching up on recent loans - try again";
+    
     private BookDAO bookDAO;
     private UserDAO userDAO;
     private TransactionDAO transactionDAO;
+    private RollupDAO rollupDAO;
+    private HoldDAO holdDAO;
     private String libraryName;
     private String address;
-    private int transactionCounter;
+    
+    // Operations on the same book or user serialize here; unrelated ones run in parallel
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    
+    // Type-ahead indexes, built on first use and kept current by the write paths; guarded by indexLock
+    private final Object indexLock = new Object();
+    private AutocompleteIndex titleSuggestions;
+    private AutocompleteIndex authorSuggestions;
+    private AutocompleteIndex userNameSuggestions;
+    private TrigramIndex fuzzyBookIndex;
+    
+    // Active loans by due date, rebuilt from the covering index at startup
+    private OverdueScheduler overdueScheduler;
+    private FineAccrualJob fineAccrualJob;
+    // Waiting and ready holds per book; changed only under the book's stripe lock, after the database commits
+    private HoldIndex holdIndex;
+    // Answers the queries; every write below refreshes the rows it touched once its change has committed
+    private final LibraryReadModel readModel = new LibraryReadModel();
+    // Optional record of every committed change, appended while the stripe locks still order them
+    private volatile CirculationJournal journal;
+    // Set while write-behind is on: borrows and returns are answered from the read model and written in batches
+    private volatile WriteBehindQueue<PendingCirculation> writeBehind;
+    private final Runnable writeBehindShutdown = this::disableWriteBehind;
+    private final Runnable backgroundJobsShutdown = this::stopBackgroundJobs;
+    
+    // A write-behind borrow or return, with the versions the read model gave its book and user
+    private record PendingCirculation(BorrowTransaction transaction, String genre, long bookVersion, long userVersion) {}
+    private record StatusChange(Book.BookStatus from, Book.BookStatus to, long version) {}
+    private record SlotChange(int delta, long version) {}
+    private enum BatchOutcome { WRITTEN, CONFLICT, FAILED }
     
     public DatabaseLibrary(String libraryName, String address) {
         this.libraryName = (libraryName != null) ? libraryName : "Community Library";
@@ -14,33 +63,46 @@ public class DatabaseLibrary {
         this.bookDAO = new BookDAO();
         this.userDAO = new UserDAO();
         this.transactionDAO = new TransactionDAO();
-        this.transactionCounter = getNextTransactionCounter();
+        this.rollupDAO = new RollupDAO();
+        this.overdueScheduler = new OverdueScheduler();
+        this.overdueScheduler.rebuild(transactionDAO.findActiveSummaries());
+        this.overdueScheduler.addOverdueListener(loan -> System.out.println("⏰ Now overdue: " + loan.bookIsbn() +
+                " borrowed by " + loan.userId() + " (" + loan.transactionId() + ")"));
+        this.overdueScheduler.addOverdueListener(loan -> {
+            Book book = readModel.getBook(loan.bookIsbn());
+            if (!rollupDAO.recordOverdue((book != null) ? book.getGenre() : null, loan.dueTime())) {
+                System.err.println("⚠️ Circulation rollups missed overdue loan " + loan.transactionId());
+            }
+        });
+        if (!rollupDAO.isAlignedToLocalZone()) {
+            rollupDAO.backfill();
+        }
+        this.fineAccrualJob = new FineAccrualJob();
+        this.holdDAO = new HoldDAO();
+        this.holdIndex = new HoldIndex();
+        this.holdIndex.rebuild(holdDAO.findActive());
+        this.fineAccrualJob.addCompletionListener(summary -> {
+            if (summary.transactionsUpdated() > 0) {
+                List<BorrowTransaction> loans = transactionDAO.findActiveTransactions();
+                List<CirculationEvent> events = new ArrayList<>();
+                for (BorrowTransaction loan : loans) {
+                    BorrowTransaction known = readModel.getTransaction(loan.getTransactionId());
+                    if (known == null || known.getFineAmount() != loan.getFineAmount()) {
+                        events.add(new CirculationEvent.FineAccrued(System.currentTimeMillis(),
+                                loan.getTransactionId(), loan.getFineAmount()));
+                    }
+                }
+                readModel.putTransactions(loans);
+                journal(events);
+            }
+        });
+        loadReadModel();
     }
     
     public DatabaseLibrary() {
         this("Community Library", "Main Street");
     }
     
-    private int getNextTransactionCounter() {
-        // Get the highest transaction number from database
-        List<BorrowTransaction> allTransactions = transactionDAO.findAll();
-        int maxCounter = 0;
-        
-        for (BorrowTransaction transaction : allTransactions) {
-            String id = transaction.getTransactionId();
-            if (id.startsWith("T")) {
-                try {
-                    int counter = Integer.parseInt(id.substring(1));
-                    maxCounter = Math.max(maxCounter, counter);
-                } catch (NumberFormatException e) {
-                    // Ignore invalid transaction IDs
-                }
-            }
-        }
-        
-        return maxCounter + 1;
-    }
-    
     public String getLibraryName() {
         return libraryName;
     }
@@ -51,44 +113,122 @@ public class DatabaseLibrary {
     
     // Book Operations
     public boolean addBook(Book book) {
-        return bookDAO.createBook(book);
+        try (StripedLock.Held held = locks.lock(bookLockKey(book.getIsbn()))) {
+            boolean added = bookDAO.createBook(book);
+            if (added) {
+                refreshBook(book.getIsbn());
+                journal(CirculationEvent.BookChanged.of(book));
+                synchronized (indexLock) {
+                    if (titleSuggestions != null) {
+                        titleSuggestions.put(book.getIsbn(), book.getTitle(), 0);
+                        authorSuggestions.put(book.getIsbn(), book.getAuthor(), 0);
+                    }
+                    if (fuzzyBookIndex != null) {
+                        fuzzyBookIndex.put(book.getIsbn(), book.getTitle() + " " + book.getAuthor());
+                    }
+                }
+            }
+            return added;
+        }
     }
     
     public boolean removeBook(String isbn) {
-        return bookDAO.deleteBook(isbn);
+        try (StripedLock.Held held = locks.lock(bookLockKey(isbn))) {
+            if (!awaitWriteBehind()) return false;
+            Book book = bookDAO.findByIsbn(isbn);
+            if (book != null && holdIndex.hasHolds(book.getIsbn())) {
+                System.err.println("❌ Cannot delete book - patrons are waiting on holds");
+                return false;
+            }
+            boolean removed = bookDAO.deleteBook(isbn);
+            if (removed && book != null) {
+                // The indexes are keyed by the ISBN as stored
+                isbn = book.getIsbn();
+            }
+            if (removed) {
+                readModel.removeBook(isbn);
+                journal(new CirculationEvent.BookRemoved(System.currentTimeMillis(), isbn));
+                synchronized (indexLock) {
+                    if (titleSuggestions != null) {
+                        titleSuggestions.remove(isbn);
+                        authorSuggestions.remove(isbn);
+                    }
+                    if (fuzzyBookIndex != null) {
+                        fuzzyBookIndex.remove(isbn);
+                    }
+                }
+            }
+            return removed;
+        }
     }
     
     public boolean updateBook(String isbn, String title, String author, String genre) {
-        Book book = bookDAO.findByIsbn(isbn);
-        if (book == null) return false;
-        
-        book.setTitle(title);
-        book.setAuthor(author);
-        book.setGenre(genre);
-        
-        return bookDAO.updateBook(book);
+        try {
+            return updateBook(isbn, book -> {
+                book.setTitle(title);
+                book.setAuthor(author);
+                book.setGenre(genre);
+            });
+        } catch (OptimisticLockException e) {
+            System.err.println("❌ Book not updated: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Reads, edits and saves, starting over from a fresh read if someone else saved first
+    public boolean updateBook(String isbn, Consumer<Book> edit) {
+        return retryOnConflict(DEFAULT_CONFLICT_ATTEMPTS, () -> {
+            Book book = bookDAO.findByIsbn(isbn);
+            if (book == null) return false;
+            
+            edit.accept(book);
+            return saveBook(book);
+        });
+    }
+    
+    // For a copy read earlier and edited at the desk: no lock is held in between, and if the row
+    // changed meanwhile the save throws OptimisticLockException instead of overwriting it
+    public boolean saveBook(Book book) {
+        try (StripedLock.Held held = locks.lock(bookLockKey(book.getIsbn()))) {
+            if (!awaitWriteBehind()) return false;
+            boolean updated = bookDAO.updateBook(book);
+            if (updated) {
+                refreshBook(book.getIsbn());
+                journal(CirculationEvent.BookChanged.of(book));
+                synchronized (indexLock) {
+                    if (titleSuggestions != null) {
+                        titleSuggestions.rename(book.getIsbn(), book.getTitle());
+                        authorSuggestions.rename(book.getIsbn(), book.getAuthor());
+                    }
+                    if (fuzzyBookIndex != null) {
+                        fuzzyBookIndex.put(book.getIsbn(), book.getTitle() + " " + book.getAuthor());
+                    }
+                }
+            }
+            return updated;
+        }
     }
     
     public Book getBook(String isbn) {
-        return bookDAO.findByIsbn(isbn);
+        return readModel.getBook(isbn);
     }
     
     public List<Book> searchBooksByTitle(String title) {
-        return bookDAO.findByTitle(title);
+        return readModel.searchBooksByTitle(title);
     }
     
     public List<Book> searchBooksByAuthor(String author) {
-        return bookDAO.findByAuthor(author);
+        return readModel.searchBooksByAuthor(author);
     }
     
     public List<Book> searchBooksByGenre(String genre) {
-        return bookDAO.findByGenre(genre);
+        return readModel.searchBooksByGenre(genre);
     }
     
     public List<Book> searchBooksByIsbn(String isbn) {
         List<Book> results = new ArrayList<>();
         if (isbn != null && !isbn.trim().isEmpty()) {
-            Book book = bookDAO.findByIsbn(isbn);
+            Book book = readModel.getBook(isbn);
             if (book != null) {
                 results.add(book);
             }
@@ -97,30 +237,58 @@ public class DatabaseLibrary {
     }
     
     public List<Book> getAllBooks() {
-        return bookDAO.findAll();
+        return readModel.getAllBooks();
     }
     
     public List<Book> getAvailableBooks() {
-        return bookDAO.findAvailableBooks();
+        return readModel.getBooksByStatus(Book.BookStatus.AVAILABLE);
+    }
+    
+    // Lightweight projections for list views
+    public List<BookSummary> getBookSummaries() {
+        return readModel.getBookSummaries(null);
+    }
+    
+    public List<BookSummary> getAvailableBookSummaries() {
+        return readModel.getBookSummaries(Book.BookStatus.AVAILABLE);
     }
     
     // User Operations
     public boolean registerUser(User user) {
-        return userDAO.createUser(user);
+        try (StripedLock.Held held = locks.lock(userLockKey(user.getUserId()))) {
+            boolean registered = userDAO.createUser(user);
+            if (registered) {
+                refreshUser(user.getUserId());
+                journal(CirculationEvent.UserChanged.of(user));
+            }
+            if (registered) {
+                synchronized (indexLock) {
+                    if (userNameSuggestions != null) {
+                        userNameSuggestions.put(user.getUserId(), user.getName(), 0);
+                    }
+                }
+            }
+            return registered;
+        }
     }
     
     public User getUser(String userId) {
-        return userDAO.findById(userId);
+        return readModel.getUser(userId);
+    }
+    
+    // Case-insensitive, e.g. for self-service login by email
+    public User getUserByEmail(String email) {
+        return readModel.getUserByEmail(email);
     }
     
     public List<User> searchUsersByName(String name) {
-        return userDAO.findByName(name);
+        return readModel.searchUsersByName(name);
     }
     
     public List<User> searchUsersById(String userId) {
         List<User> results = new ArrayList<>();
         if (userId != null && !userId.trim().isEmpty()) {
-            User user = userDAO.findById(userId);
+            User user = readModel.getUser(userId);
             if (user != null) {
                 results.add(user);
             }
@@ -129,61 +297,123 @@ public class DatabaseLibrary {
     }
     
     public List<User> getAllUsers() {
-        return userDAO.findAll();
+        return readModel.getAllUsers();
+    }
+    
+    public List<UserSummary> getUserSummaries() {
+        return readModel.getUserSummaries(false);
+    }
+    
+    public List<UserSummary> getActiveUserSummaries() {
+        return readModel.getUserSummaries(true);
     }
     
     // Transaction Operations
     public String borrowBook(String isbn, String userId) {
+        expireHolds();
+        // Room is reserved before the stripe locks, so waiting on a full queue never holds up other desks' locks
+        WriteBehindQueue<PendingCirculation> queue = writeBehind;
+        boolean reserved = queue != null && queue.reserve();
+        try (StripedLock.Held held = locks.lock(bookLockKey(isbn), userLockKey(userId))) {
+            if (reserved) {
+                String result = borrowBookBehind(queue, isbn, userId);
+                if (result != null) return result;
+            }
+            if (!awaitWriteBehind()) return WRITE_BEHIND_BUSY;
+            return borrowBookLocked(isbn, userId);
+        }
+    }
+    
+    // Anything but a queued change gives the slot back; null sends the caller down the write-through path,
+    // which is where holds are handled
+    private String borrowBookBehind(WriteBehindQueue<PendingCirculation> queue, String isbn, String userId) {
+        Book book = readModel.getBook(isbn);
+        User user = readModel.getUser(userId);
+        String refusal;
+        if (book != null && holdIndex.hasHolds(book.getIsbn())) {
+            refusal = null;
+        } else if (book == null) {
+            refusal = "Book not found";
+        } else if (!book.isAvailable()) {
+            refusal = "Book is not available";
+        } else if (user == null) {
+            refusal = "User not found";
+        } else if (!user.isActive()) {
+            refusal = "User account is inactive";
+        } else if (!user.canBorrowMoreBooks()) {
+            refusal = "User has reached maximum book limit";
+        } else {
+            String transactionId = transactionDAO.nextTransactionId();
+            if (transactionId != null) {
+                BorrowTransaction transaction = new BorrowTransaction(transactionId, book.getIsbn(), userId);
+                PendingCirculation change = new PendingCirculation(transaction, book.getGenre(),
+                        book.getVersion() + 1, user.getVersion() + 1);
+                readModel.applyCirculation(transaction, change.bookVersion(), change.userVersion());
+                queue.add(change);
+                overdueScheduler.schedule(transaction);
+                recordPopularity(book.getIsbn(), userId);
+                return "Book borrowed successfully. Transaction ID: " + transactionId;
+            }
+            refusal = "Failed to allocate transaction ID";
+        }
+        queue.release();
+        return refusal;
+    }
+    
+    private String borrowBookLocked(String isbn, String userId) {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
         try {
-            Book book = bookDAO.findByIsbn(isbn);
-            User user = userDAO.findById(userId);
+            // Drawn before the transaction opens, since refilling the ID block commits on its own
+            String transactionId = transactionDAO.nextTransactionId();
+            if (transactionId == null) return "Failed to allocate transaction ID";
             
-            if (book == null) return "Book not found";
-            if (user == null) return "User not found";
-            if (!book.isAvailable()) return "Book is not available";
-            if (!user.canBorrowMoreBooks()) return "User has reached maximum book limit";
+            dbManager.beginTransaction();
             
-            // Check if there's already an active transaction for this book and user
-            BorrowTransaction existingTransaction = transactionDAO.findActiveTransactionByBookAndUser(isbn, userId);
-            if (existingTransaction != null) {
-                return "User already has an active borrowing for this book";
+            // Claiming the book is the availability check, so two desks can never check out the same copy
+            List<Hold> pickups = new ArrayList<>();
+            Book book = claimCopy(isbn, userId, pickups);
+            if (book == null) {
+                dbManager.rollback();
+                Book current = bookDAO.findByIsbn(isbn);
+                if (current == null) return "Book not found";
+                return current.getStatus() == Book.BookStatus.RESERVED ? "Book is reserved for another patron" : "Book is not available";
             }
             
-            // Create transaction
-            String transactionId = "T" + String.format("%06d", transactionCounter++);
-            BorrowTransaction transaction = new BorrowTransaction(transactionId, isbn, userId);
-            
-            // Begin database transaction
-            DatabaseManager.getInstance().beginTransaction();
+            // Transactions reference the ISBN as stored, whatever spelling the caller used
+            isbn = book.getIsbn();
             
-            // Update book status
-            book.setStatus(Book.BookStatus.BORROWED);
-            if (!bookDAO.updateBookStatus(isbn, Book.BookStatus.BORROWED)) {
-                DatabaseManager.getInstance().rollback();
-                return "Failed to update book status";
+            if (!userDAO.reserveBorrowSlot(userId)) {
+                dbManager.rollback();
+                User user = userDAO.findById(userId);
+                if (user == null) return "User not found";
+                if (!user.isActive()) return "User account is inactive";
+                return "User has reached maximum book limit";
             }
             
-            // Update user's borrowed books count (simplified approach)
-            User updatedUser = userDAO.findById(userId);
-            if (!userDAO.updateBorrowedBooksCount(userId, updatedUser.getBorrowedBooksCount() + 1)) {
-                DatabaseManager.getInstance().rollback();
-                return "Failed to update user borrowing count";
-            }
+            BorrowTransaction transaction = new BorrowTransaction(transactionId, isbn, userId);
+            transactionDAO.insertTransaction(transaction);
             
-            // Create transaction record
-            if (!transactionDAO.createTransaction(transaction)) {
-                DatabaseManager.getInstance().rollback();
-                return "Failed to create transaction record";
+            // Trend counters are secondary, so a failed rollup is logged rather than failing the loan
+            if (!rollupDAO.recordLoan(book.getGenre(), transaction.getBorrowTime())) {
+                System.err.println("⚠️ Circulation rollups missed loan " + transactionId);
             }
             
-            DatabaseManager.getInstance().commit();
-            DatabaseManager.getInstance().endTransaction();
+            dbManager.commit();
+            refreshBook(isbn);
+            refreshUser(userId);
+            readModel.putTransaction(transaction);
+            journal(CirculationEvent.BookBorrowed.of(transaction));
+            overdueScheduler.schedule(transaction);
+            pickups.forEach(hold -> holdIndex.remove(hold.holdId()));
+            System.out.println("✅ Transaction created: " + transactionId);
+            
+            recordPopularity(isbn, userId);
             
             return "Book borrowed successfully. Transaction ID: " + transactionId;
             
         } catch (Exception e) {
             try {
-                DatabaseManager.getInstance().rollback();
+                dbManager.rollback();
             } catch (Exception rollbackEx) {
                 System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
             }
@@ -192,55 +422,113 @@ public class DatabaseLibrary {
     }
     
     public String returnBook(String isbn, String userId) {
+        WriteBehindQueue<PendingCirculation> queue = writeBehind;
+        boolean reserved = queue != null && queue.reserve();
+        try (StripedLock.Held held = locks.lock(bookLockKey(isbn), userLockKey(userId))) {
+            if (reserved) {
+                String result = returnBookBehind(queue, isbn, userId);
+                if (result != null) return result;
+            }
+            if (!awaitWriteBehind()) return WRITE_BEHIND_BUSY;
+            return returnBookLocked(isbn, userId);
+        }
+    }
+    
+    // Same slot rules as borrowBookBehind; a copy with holds waiting goes through so it can be assigned
+    private String returnBookBehind(WriteBehindQueue<PendingCirculation> queue, String isbn, String userId) {
+        Book book = readModel.getBook(isbn);
+        User user = readModel.getUser(userId);
+        String refusal;
+        if (book != null && holdIndex.hasHolds(book.getIsbn())) {
+            refusal = null;
+        } else if (book == null) {
+            refusal = "Book not found";
+        } else if (book.isAvailable()) {
+            refusal = "Book is not currently borrowed";
+        } else {
+            BorrowTransaction transaction = readModel.getActiveTransaction(book.getIsbn(), userId);
+            if (transaction != null && user != null) {
+                double finePerDay = new SettingsDAO().getDoubleSetting("fine_per_day", BorrowTransaction.DEFAULT_FINE_PER_DAY);
+                transaction.markAsReturned(finePerDay);
+                PendingCirculation change = new PendingCirculation(transaction, book.getGenre(),
+                        book.getVersion() + 1, user.getVersion() + 1);
+                readModel.applyCirculation(transaction, change.bookVersion(), change.userVersion());
+                queue.add(change);
+                overdueScheduler.cancel(transaction.getTransactionId());
+                return (transaction.getFineAmount() > 0)
+                        ? String.format("Book returned successfully. Fine: $%.2f", transaction.getFineAmount())
+                        : "Book returned successfully";
+            }
+            refusal = (user == null) ? "User not found" : "No active transaction found";
+        }
+        queue.release();
+        return refusal;
+    }
+    
+    private String returnBookLocked(String isbn, String userId) {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
         try {
             Book book = bookDAO.findByIsbn(isbn);
-            User user = userDAO.findById(userId);
-            
             if (book == null) return "Book not found";
-            if (user == null) return "User not found";
             if (book.isAvailable()) return "Book is not currently borrowed";
             
+            isbn = book.getIsbn();
+            
             // Find active transaction
             BorrowTransaction transaction = transactionDAO.findActiveTransactionByBookAndUser(isbn, userId);
-            if (transaction == null) return "No active transaction found";
+            if (transaction == null) {
+                return userDAO.findById(userId) == null ? "User not found" : "No active transaction found";
+            }
             
-            // Begin database transaction
-            DatabaseManager.getInstance().beginTransaction();
+            double finePerDay = new SettingsDAO().getDoubleSetting("fine_per_day", BorrowTransaction.DEFAULT_FINE_PER_DAY);
+            dbManager.beginTransaction();
             
-            // Update book status
-            book.setStatus(Book.BookStatus.AVAILABLE);
-            if (!bookDAO.updateBookStatus(isbn, Book.BookStatus.AVAILABLE)) {
-                DatabaseManager.getInstance().rollback();
-                return "Failed to update book status";
+            // Mark transaction as returned and calculate fine if overdue
+            transaction.markAsReturned(finePerDay);
+            if (!transactionDAO.completeReturn(transaction) || !bookDAO.releaseFromCheckout(isbn)) {
+                dbManager.rollback();
+                return "Book is not currently borrowed";
             }
             
-            // Update user's borrowed books count
-            User updatedUser = userDAO.findById(userId);
-            if (!userDAO.updateBorrowedBooksCount(userId, Math.max(0, updatedUser.getBorrowedBooksCount() - 1))) {
-                DatabaseManager.getInstance().rollback();
-                return "Failed to update user borrowing count";
+            // A count already at zero is left there; the return itself still goes through
+            if (!userDAO.releaseBorrowSlot(userId)) {
+                System.err.println("⚠️ Borrowed books count for " + userId + " was already zero");
             }
             
-            // Mark transaction as returned and calculate fine if overdue
-            transaction.markAsReturned();
-            if (!transactionDAO.updateTransaction(transaction)) {
-                DatabaseManager.getInstance().rollback();
-                return "Failed to update transaction record";
+            Hold assigned = assignToNextHold(isbn, transaction.getReturnTime());
+            
+            if (!rollupDAO.recordReturn(book.getGenre(), transaction.getReturnTime(),
+                    transaction.isOverdue(), transaction.getFineAmount())) {
+                System.err.println("⚠️ Circulation rollups missed return " + transaction.getTransactionId());
             }
             
-            DatabaseManager.getInstance().commit();
-            DatabaseManager.getInstance().endTransaction();
+            dbManager.commit();
+            refreshBook(isbn);
+            refreshUser(userId);
+            refreshTransactions(List.of(transaction.getTransactionId()));
+            if (assigned != null) {
+                journal(CirculationEvent.BookReturned.of(transaction),
+                        new CirculationEvent.BookStatusChanged(transaction.getReturnTime(), isbn, Book.BookStatus.RESERVED));
+            } else {
+                journal(CirculationEvent.BookReturned.of(transaction));
+            }
+            overdueScheduler.cancel(transaction.getTransactionId());
+            System.out.println("✅ Transaction updated: " + transaction.getTransactionId());
             
             String message = "Book returned successfully";
             if (transaction.getFineAmount() > 0) {
                 message += String.format(". Fine: $%.2f", transaction.getFineAmount());
             }
+            if (assigned != null) {
+                holdIndex.add(assigned);
+                message += ". Reserved for " + assigned.userId();
+            }
             
             return message;
             
         } catch (Exception e) {
             try {
-                DatabaseManager.getInstance().rollback();
+                dbManager.rollback();
             } catch (Exception rollbackEx) {
                 System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
             }
@@ -248,29 +536,511 @@ public class DatabaseLibrary {
         }
     }
     
+    // Validates the whole cart with set-based reads, then applies it in one transaction; each item succeeds or fails alone
+    public List<CartItemResult> checkoutCart(String userId, List<String> isbns) {
+        expireHolds();
+        List<String> keys = new ArrayList<>();
+        keys.add(userLockKey(userId));
+        isbns.forEach(isbn -> keys.add(bookLockKey(isbn)));
+        try (StripedLock.Held held = locks.lock(keys)) {
+            if (!awaitWriteBehind()) {
+                List<CartItemResult> results = new ArrayList<>();
+                isbns.forEach(isbn -> results.add(new CartItemResult(new CartItem(isbn, userId), false, WRITE_BEHIND_BUSY, null)));
+                return results;
+            }
+            return checkoutCartLocked(userId, isbns);
+        }
+    }
+    
+    private List<CartItemResult> checkoutCartLocked(String userId, List<String> isbns) {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        Map<String, Book> books = bookDAO.findByIsbns(isbns);
+        User user = userDAO.findById(userId);
+        
+        CartItemResult[] results = new CartItemResult[isbns.size()];
+        List<Integer> pending = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < isbns.size(); i++) {
+            CartItem item = new CartItem(isbns.get(i), userId);
+            Book book = books.get(item.isbn());
+            if (user == null) {
+                results[i] = new CartItemResult(item, false, "User not found", null);
+            } else if (!user.isActive()) {
+                results[i] = new CartItemResult(item, false, "User account is inactive", null);
+            } else if (book == null) {
+                results[i] = new CartItemResult(item, false, "Book not found", null);
+            } else if (!seen.add(book.getIsbn())) {
+                results[i] = new CartItemResult(item, false, "Book is already in this cart", null);
+            } else if (!book.isAvailable() && !isHeldFor(book, userId)) {
+                results[i] = new CartItemResult(item, false, "Book is not available", null);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) return Arrays.asList(results);
+        
+        // Drawn before the transaction opens, since refilling the ID block commits on its own
+        List<String> transactionIds = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            String transactionId = transactionDAO.nextTransactionId();
+            if (transactionId == null) break;
+            transactionIds.add(transactionId);
+        }
+        
+        List<BorrowTransaction> borrowed = new ArrayList<>();
+        List<Hold> pickups = new ArrayList<>();
+        try {
+            dbManager.beginTransaction();
+            for (int n = 0; n < pending.size(); n++) {
+                int i = pending.get(n);
+                CartItem item = new CartItem(isbns.get(i), userId);
+                if (n >= transactionIds.size()) {
+                    results[i] = new CartItemResult(item, false, "Failed to allocate transaction ID", null);
+                    continue;
+                }
+                
+                Savepoint savepoint = dbManager.setSavepoint();
+                List<Hold> itemPickups = new ArrayList<>();
+                try {
+                    Book book = claimCopy(item.isbn(), userId, itemPickups);
+                    if (book == null) {
+                        dbManager.rollback(savepoint);
+                        results[i] = new CartItemResult(item, false, "Book is not available", null);
+                        continue;
+                    }
+                    if (!userDAO.reserveBorrowSlot(userId)) {
+                        dbManager.rollback(savepoint);
+                        results[i] = new CartItemResult(item, false, "User has reached maximum book limit", null);
+                        continue;
+                    }
+                    
+                    BorrowTransaction transaction = new BorrowTransaction(transactionIds.get(n), book.getIsbn(), userId);
+                    transactionDAO.insertTransaction(transaction);
+                    if (!rollupDAO.recordLoan(book.getGenre(), transaction.getBorrowTime())) {
+                        System.err.println("⚠️ Circulation rollups missed loan " + transaction.getTransactionId());
+                    }
+                    dbManager.releaseSavepoint(savepoint);
+                    
+                    pickups.addAll(itemPickups);
+                    borrowed.add(transaction);
+                    results[i] = new CartItemResult(item, true, "Borrowed", transaction.getTransactionId());
+                    
+                } catch (SQLException e) {
+                    dbManager.rollback(savepoint);
+                    results[i] = new CartItemResult(item, false, "Error during borrowing: " + e.getMessage(), null);
+                }
+            }
+            dbManager.commit();
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            // Nothing from this cart was committed, so every item reports the failure
+            for (int i : pending) {
+                results[i] = new CartItemResult(new CartItem(isbns.get(i), userId), false, "Error during checkout: " + e.getMessage(), null);
+            }
+            return Arrays.asList(results);
+        }
+        
+        List<String> borrowedIsbns = new ArrayList<>();
+        List<CirculationEvent> events = new ArrayList<>();
+        borrowed.forEach(transaction -> {
+            borrowedIsbns.add(transaction.getBookIsbn());
+            events.add(CirculationEvent.BookBorrowed.of(transaction));
+        });
+        if (!borrowed.isEmpty()) {
+            refreshBooks(borrowedIsbns);
+            refreshUser(userId);
+            readModel.putTransactions(borrowed);
+        }
+        journal(events);
+        for (BorrowTransaction transaction : borrowed) {
+            overdueScheduler.schedule(transaction);
+            recordPopularity(transaction.getBookIsbn(), userId);
+        }
+        pickups.forEach(hold -> holdIndex.remove(hold.holdId()));
+        System.out.println("🛒 Checked out " + borrowed.size() + " of " + isbns.size() + " items for " + userId);
+        return Arrays.asList(results);
+    }
+    
+    public List<CartItemResult> returnCart(List<CartItem> items) {
+        List<String> keys = new ArrayList<>();
+        for (CartItem item : items) {
+            keys.add(bookLockKey(item.isbn()));
+            keys.add(userLockKey(item.userId()));
+        }
+        try (StripedLock.Held held = locks.lock(keys)) {
+            if (!awaitWriteBehind()) {
+                List<CartItemResult> results = new ArrayList<>();
+                items.forEach(item -> results.add(new CartItemResult(item, false, WRITE_BEHIND_BUSY, null)));
+                return results;
+            }
+            return returnCartLocked(items);
+        }
+    }
+    
+    private List<CartItemResult> returnCartLocked(List<CartItem> items) {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        List<String> isbns = new ArrayList<>();
+        items.forEach(item -> isbns.add(item.isbn()));
+        Map<String, Book> books = bookDAO.findByIsbns(isbns);
+        Set<String> storedIsbns = new HashSet<>();
+        books.values().forEach(book -> storedIsbns.add(book.getIsbn()));
+        Map<String, BorrowTransaction> activeLoans = transactionDAO.findActiveByBookIsbns(storedIsbns);
+        double finePerDay = new SettingsDAO().getDoubleSetting("fine_per_day", BorrowTransaction.DEFAULT_FINE_PER_DAY);
+        
+        CartItemResult[] results = new CartItemResult[items.size()];
+        List<Integer> pending = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            Book book = books.get(item.isbn());
+            BorrowTransaction loan = (book != null) ? activeLoans.get(book.getIsbn()) : null;
+            if (book == null) {
+                results[i] = new CartItemResult(item, false, "Book not found", null);
+            } else if (loan == null || !loan.getUserId().equals(item.userId())) {
+                results[i] = new CartItemResult(item, false, "No active transaction found", null);
+            } else if (!seen.add(book.getIsbn())) {
+                results[i] = new CartItemResult(item, false, "Book is already in this return", null);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) return Arrays.asList(results);
+        
+        List<BorrowTransaction> returned = new ArrayList<>();
+        List<Hold> assigned = new ArrayList<>();
+        List<CirculationEvent> events = new ArrayList<>();
+        try {
+            dbManager.beginTransaction();
+            for (int i : pending) {
+                CartItem item = items.get(i);
+                Book book = books.get(item.isbn());
+                BorrowTransaction transaction = activeLoans.get(book.getIsbn());
+                
+                Savepoint savepoint = dbManager.setSavepoint();
+                try {
+                    transaction.markAsReturned(finePerDay);
+                    if (!transactionDAO.completeReturn(transaction) || !bookDAO.releaseFromCheckout(book.getIsbn())) {
+                        dbManager.rollback(savepoint);
+                        results[i] = new CartItemResult(item, false, "Book is not currently borrowed", null);
+                        continue;
+                    }
+                    // A count already at zero is left there; the return itself still goes through
+                    if (!userDAO.releaseBorrowSlot(item.userId())) {
+                        System.err.println("⚠️ Borrowed books count for " + item.userId() + " was already zero");
+                    }
+                    Hold next = assignToNextHold(book.getIsbn(), transaction.getReturnTime());
+                    if (!rollupDAO.recordReturn(book.getGenre(), transaction.getReturnTime(),
+                            transaction.isOverdue(), transaction.getFineAmount())) {
+                        System.err.println("⚠️ Circulation rollups missed return " + transaction.getTransactionId());
+                    }
+                    dbManager.releaseSavepoint(savepoint);
+                    
+                    returned.add(transaction);
+                    events.add(CirculationEvent.BookReturned.of(transaction));
+                    String message = transaction.getFineAmount() > 0
+                            ? String.format("Returned. Fine: $%.2f", transaction.getFineAmount())
+                            : "Returned";
+                    if (next != null) {
+                        assigned.add(next);
+                        events.add(new CirculationEvent.BookStatusChanged(transaction.getReturnTime(),
+                                book.getIsbn(), Book.BookStatus.RESERVED));
+                        message += ". Reserved for " + next.userId();
+                    }
+                    results[i] = new CartItemResult(item, true, message, transaction.getTransactionId());
+                    
+                } catch (SQLException e) {
+                    dbManager.rollback(savepoint);
+                    results[i] = new CartItemResult(item, false, "Error during return: " + e.getMessage(), null);
+                }
+            }
+            dbManager.commit();
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            for (int i : pending) {
+                results[i] = new CartItemResult(items.get(i), false, "Error during return: " + e.getMessage(), null);
+            }
+            return Arrays.asList(results);
+        }
+        
+        if (!returned.isEmpty()) {
+            List<String> returnedIsbns = new ArrayList<>();
+            List<String> returnedIds = new ArrayList<>();
+            Set<String> borrowers = new HashSet<>();
+            for (BorrowTransaction transaction : returned) {
+                returnedIsbns.add(transaction.getBookIsbn());
+                returnedIds.add(transaction.getTransactionId());
+                borrowers.add(transaction.getUserId());
+            }
+            refreshBooks(returnedIsbns);
+            borrowers.forEach(this::refreshUser);
+            refreshTransactions(returnedIds);
+        }
+        journal(events);
+        returned.forEach(transaction -> overdueScheduler.cancel(transaction.getTransactionId()));
+        assigned.forEach(holdIndex::add);
+        System.out.println("🛒 Returned " + returned.size() + " of " + items.size() + " items");
+        return Arrays.asList(results);
+    }
+    
+    // Hold Operations
+    public String placeHold(String isbn, String userId) {
+        return placeHold(isbn, userId, Hold.NORMAL_PRIORITY);
+    }
+    
+    // Higher priorities are served first; equal priorities in the order the holds were placed
+    public String placeHold(String isbn, String userId, int priority) {
+        expireHolds();
+        try (StripedLock.Held held = locks.lock(bookLockKey(isbn), userLockKey(userId))) {
+            if (!awaitWriteBehind()) return WRITE_BEHIND_BUSY;
+            Book book = bookDAO.findByIsbn(isbn);
+            if (book == null) return "Book not found";
+            User user = userDAO.findById(userId);
+            if (user == null) return "User not found";
+            if (!user.isActive()) return "User account is inactive";
+            
+            isbn = book.getIsbn();
+            if (book.isAvailable()) return "Book is available - borrow it instead";
+            if (user.hasBorrowedBook(isbn)) return "User already has this book";
+            if (holdIndex.find(isbn, userId) != null) return "User already has a hold on this book";
+            
+            Hold hold = holdDAO.createHold(new Hold(0, isbn, userId, priority, System.currentTimeMillis(),
+                    Hold.Status.WAITING, 0, 0));
+            if (hold == null) return "Failed to place hold";
+            
+            holdIndex.add(hold);
+            return "Hold placed. Queue position: " + holdIndex.position(isbn, userId);
+        }
+    }
+    
+    public String cancelHold(String isbn, String userId) {
+        try (StripedLock.Held held = locks.lock(bookLockKey(isbn), userLockKey(userId))) {
+            Book book = bookDAO.findByIsbn(isbn);
+            if (book == null) return "Book not found";
+            Hold hold = holdIndex.find(book.getIsbn(), userId);
+            if (hold == null) return "No active hold found";
+            
+            return closeHold(hold, Hold.Status.CANCELLED, System.currentTimeMillis())
+                    ? "Hold cancelled" : "Failed to cancel hold";
+        }
+    }
+    
+    // For deactivated patrons, whose holds would otherwise tie up returned copies they can no longer borrow
+    private void cancelHolds(List<Hold> holds) {
+        int cancelled = 0;
+        for (Hold hold : holds) {
+            if (!hold.isActive()) continue;
+            try (StripedLock.Held held = locks.lock(bookLockKey(hold.bookIsbn()), userLockKey(hold.userId()))) {
+                Hold current = holdIndex.find(hold.bookIsbn(), hold.userId());
+                if (current != null && closeHold(current, Hold.Status.CANCELLED, System.currentTimeMillis())) {
+                    cancelled++;
+                }
+            }
+        }
+        if (cancelled > 0) {
+            System.out.println("🚫 Cancelled " + cancelled + " holds of deactivated patrons");
+        }
+    }
+    
+    // 1 for the next patron in line, 0 when the book is waiting at the desk for them, -1 without an active hold
+    public int getHoldQueuePosition(String isbn, String userId) {
+        expireHolds();
+        Book book = readModel.getBook(isbn);
+        return (book != null) ? holdIndex.position(book.getIsbn(), userId) : -1;
+    }
+    
+    public int getHoldQueueLength(String isbn) {
+        Book book = readModel.getBook(isbn);
+        return (book != null) ? holdIndex.waitingCount(book.getIsbn()) : 0;
+    }
+    
+    public List<Hold> getUserHolds(String userId) {
+        return holdDAO.findByUser(userId);
+    }
+    
+    // Lapsed pickups pass their copy on to the next patron in line; costs one check when nothing has lapsed
+    public int expireHolds() {
+        long now = System.currentTimeMillis();
+        if (!holdIndex.hasExpired(now)) return 0;
+        
+        int expired = 0;
+        for (Hold hold : holdIndex.getExpired(now)) {
+            try (StripedLock.Held held = locks.lock(bookLockKey(hold.bookIsbn()), userLockKey(hold.userId()))) {
+                // Picked up or cancelled while this sweep waited for the lock
+                Hold current = holdIndex.getReady(hold.bookIsbn());
+                if (current == null || current.holdId() != hold.holdId()) continue;
+                if (closeHold(hold, Hold.Status.EXPIRED, now)) {
+                    expired++;
+                }
+            }
+        }
+        if (expired > 0) {
+            System.out.println("⌛ Expired " + expired + " uncollected holds");
+        }
+        return expired;
+    }
+    
+    // Ends an active hold; a copy that was waiting for this patron goes to the next one, or back on the shelf
+    private boolean closeHold(Hold hold, Hold.Status outcome, long now) {
+        if (!awaitWriteBehind()) return false;
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        try {
+            dbManager.beginTransaction();
+            if (!holdDAO.closeHold(hold.holdId(), hold.status(), outcome)) {
+                dbManager.rollback();
+                return false;
+            }
+            
+            Hold next = null;
+            boolean released = hold.status() == Hold.Status.READY
+                    && bookDAO.moveStatus(hold.bookIsbn(), Book.BookStatus.RESERVED, Book.BookStatus.AVAILABLE);
+            if (released) {
+                next = assignToNextHold(hold.bookIsbn(), now);
+            }
+            dbManager.commit();
+            if (released) {
+                refreshBook(hold.bookIsbn());
+                journal(new CirculationEvent.BookStatusChanged(now, hold.bookIsbn(),
+                        next != null ? Book.BookStatus.RESERVED : Book.BookStatus.AVAILABLE));
+            }
+            
+            holdIndex.remove(hold.holdId());
+            if (next != null) {
+                holdIndex.add(next);
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Failed to close hold " + hold.holdId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Joins the caller's transaction: an AVAILABLE copy with patrons waiting is set aside for the first of them.
+    // The returned hold is only put in the index once the caller has committed.
+    private Hold assignToNextHold(String storedIsbn, long now) throws SQLException {
+        Hold next = holdIndex.peekNext(storedIsbn);
+        if (next == null || !bookDAO.moveStatus(storedIsbn, Book.BookStatus.AVAILABLE, Book.BookStatus.RESERVED)) {
+            return null;
+        }
+        
+        int pickupDays = new SettingsDAO().getIntSetting("hold_pickup_days", DEFAULT_HOLD_PICKUP_DAYS);
+        long expires = now + pickupDays * DAY_MILLIS;
+        if (!holdDAO.markReady(next.holdId(), now, expires)) {
+            throw new SQLException("Hold " + next.holdId() + " is no longer waiting");
+        }
+        System.out.println("📦 " + storedIsbn + " reserved for " + next.userId());
+        return next.ready(now, expires);
+    }
+    
+    // Joins the caller's transaction: claims an AVAILABLE copy, or a RESERVED one whose ready hold is this patron's
+    private Book claimCopy(String isbn, String userId, List<Hold> pickups) throws SQLException {
+        Book book = bookDAO.claimForCheckout(isbn);
+        if (book != null) return book;
+        
+        Book current = bookDAO.findByIsbn(isbn);
+        if (current == null || !isHeldFor(current, userId)) return null;
+        
+        Hold ready = holdIndex.getReady(current.getIsbn());
+        book = bookDAO.claimForCheckout(isbn, Book.BookStatus.RESERVED);
+        if (book == null) return null;
+        if (!holdDAO.closeHold(ready.holdId(), Hold.Status.READY, Hold.Status.FULFILLED)) {
+            throw new SQLException("Hold " + ready.holdId() + " is no longer ready");
+        }
+        pickups.add(ready);
+        return book;
+    }
+    
+    private boolean isHeldFor(Book book, String userId) {
+        Hold ready = holdIndex.getReady(book.getIsbn());
+        return book.getStatus() == Book.BookStatus.RESERVED && ready != null && ready.userId().equals(userId);
+    }
+    
+    // History comes from the database, so it trails the write-behind queue by at most its lag
     public List<BorrowTransaction> getAllTransactions() {
         return transactionDAO.findAll();
     }
     
     public List<BorrowTransaction> getActiveTransactions() {
-        return transactionDAO.findActiveTransactions();
+        return readModel.getActiveTransactions();
     }
     
     public List<BorrowTransaction> getOverdueTransactions() {
-        return transactionDAO.findOverdueTransactions();
+        return readModel.getOverdueTransactions(System.currentTimeMillis());
+    }
+    
+    // Newest first, with book titles and user names filled in; pass a limit of 0 for every matching row
+    public List<TransactionDetails> getTransactionDetails(TransactionDAO.StatusFilter filter, int offset, int limit) {
+        if (filter == TransactionDAO.StatusFilter.ACTIVE || filter == TransactionDAO.StatusFilter.OVERDUE) {
+            return readModel.getTransactionDetails(filter, offset, limit);
+        }
+        return transactionDAO.findDetails(filter, offset, limit);
+    }
+    
+    public int getTransactionCount(TransactionDAO.StatusFilter filter) {
+        return readModel.getTransactionCount(filter);
+    }
+    
+    public List<TransactionSummary> getActiveTransactionSummaries() {
+        return readModel.getActiveTransactionSummaries();
+    }
+    
+    public List<TransactionSummary> getOverdueTransactionSummaries() {
+        return overdueScheduler.getOverdue();
+    }
+    
+    public OverdueScheduler getOverdueScheduler() {
+        return overdueScheduler;
+    }
+    
+    public FineAccrualJob.Summary accrueFines() {
+        return fineAccrualJob.runOnce();
+    }
+    
+    public FineAccrualJob getFineAccrualJob() {
+        return fineAccrualJob;
+    }
+    
+    // Starts the overdue ticker and the nightly fine accrual; they run until stopBackgroundJobs() or shutdown,
+    // whose hook stops them before the connection closes
+    public void start() {
+        int interval = new SettingsDAO().getIntSetting("overdue_check_interval_ms", DEFAULT_OVERDUE_CHECK_INTERVAL_MILLIS);
+        overdueScheduler.start(Math.max(1, interval));
+        fineAccrualJob.start();
+        DatabaseManager.getInstance().addShutdownTask(backgroundJobsShutdown);
+    }
+    
+    public void stopBackgroundJobs() {
+        overdueScheduler.stop();
+        fineAccrualJob.stop();
+        DatabaseManager.getInstance().removeShutdownTask(backgroundJobsShutdown);
+    }
+    
+    public List<CirculationRollup> getCirculationTrend(RollupDAO.Granularity granularity, String genre, long from, long to) {
+        return rollupDAO.findTrend(granularity, genre, from, to);
+    }
+    
+    public boolean rebuildCirculationRollups() {
+        return rollupDAO.backfill();
     }
     
     public Map<String, Integer> getLibraryStatistics() {
-        Map<String, Integer> stats = new HashMap<>();
-        
-        // Combine statistics from all DAOs
-        Map<String, Integer> bookStats = bookDAO.getBookStatistics();
-        Map<String, Integer> userStats = userDAO.getUserStatistics();
-        Map<String, Integer> transactionStats = transactionDAO.getTransactionStatistics();
-        
-        stats.putAll(bookStats);
-        stats.putAll(userStats);
-        stats.putAll(transactionStats);
+        Map<String, Integer> stats = readModel.getStatistics();
+        stats.put("Active Holds", holdIndex.size());
         
         return stats;
     }
@@ -286,14 +1056,10 @@ public class DatabaseLibrary {
             System.out.printf("%-25s: %d%n", key, value));
         
         System.out.println("\n📊 Collection by Genre:");
-        Map<String, Integer> bookStats = bookDAO.getBookStatistics();
-        bookStats.entrySet().stream()
-            .filter(entry -> entry.getKey().startsWith("Genre:"))
-            .forEach(entry -> 
-                System.out.printf("%-20s: %d books%n", 
-                    entry.getKey().substring(7), entry.getValue()));
+        readModel.getGenreCounts().forEach((genre, count) ->
+            System.out.printf("%-20s: %d books%n", genre, count));
         
-        List<BorrowTransaction> overdueTransactions = getOverdueTransactions();
+        List<TransactionDetails> overdueTransactions = readModel.getTransactionDetails(TransactionDAO.StatusFilter.OVERDUE, 0, 0);
         if (!overdueTransactions.isEmpty()) {
             System.out.println("\n⚠️  Overdue Items:");
             overdueTransactions.forEach(t -> 
@@ -304,11 +1070,97 @@ public class DatabaseLibrary {
     }
     
     public List<Book> searchBooks(String searchTerm) {
-        return bookDAO.searchBooks(searchTerm);
+        return readModel.searchBooks(searchTerm);
+    }
+    
+    public List<Book> searchBooks(String searchTerm, int offset, int limit) {
+        return readModel.searchBooks(searchTerm, offset, limit);
+    }
+    
+    // Typo-tolerant match over titles and authors, for when the exact searches find nothing
+    public List<Book> fuzzySearchBooks(String searchTerm, int limit) {
+        List<String> matches;
+        synchronized (indexLock) {
+            if (fuzzyBookIndex == null) {
+                long budgetMillis = new SettingsDAO().getIntSetting("fuzzy_search_budget_ms", (int) TrigramIndex.DEFAULT_BUDGET_MILLIS);
+                TrigramIndex index = new TrigramIndex(budgetMillis);
+                for (BookSummary book : readModel.getBookSummaries(null)) {
+                    index.put(book.isbn(), book.title() + " " + book.author());
+                }
+                fuzzyBookIndex = index;
+            }
+            matches = fuzzyBookIndex.search(searchTerm, limit);
+        }
+        
+        List<Book> results = new ArrayList<>();
+        for (String isbn : matches) {
+            Book book = readModel.getBook(isbn);
+            if (book != null) {
+                results.add(book);
+            }
+        }
+        return results;
+    }
+    
+    // Type-ahead suggestions ranked by how often the book or patron has borrowed
+    public List<String> suggestTitles(String prefix, int limit) {
+        synchronized (indexLock) {
+            ensureSuggestionIndexes();
+            return titleSuggestions.suggest(prefix, limit);
+        }
+    }
+    
+    public List<String> suggestAuthors(String prefix, int limit) {
+        synchronized (indexLock) {
+            ensureSuggestionIndexes();
+            return authorSuggestions.suggest(prefix, limit);
+        }
+    }
+    
+    public List<String> suggestUserNames(String prefix, int limit) {
+        synchronized (indexLock) {
+            ensureSuggestionIndexes();
+            return userNameSuggestions.suggest(prefix, limit);
+        }
+    }
+    
+    private void recordPopularity(String isbn, String userId) {
+        synchronized (indexLock) {
+            if (titleSuggestions != null) {
+                titleSuggestions.addPopularity(isbn, 1);
+                authorSuggestions.addPopularity(isbn, 1);
+                userNameSuggestions.addPopularity(userId, 1);
+            }
+        }
+    }
+    
+    // Callers hold indexLock
+    private void ensureSuggestionIndexes() {
+        if (titleSuggestions != null) return;
+        
+        Map<String, Integer> bookLoans = transactionDAO.getBorrowCountsByBook();
+        Map<String, Integer> userLoans = transactionDAO.getBorrowCountsByUser();
+        
+        AutocompleteIndex titles = new AutocompleteIndex();
+        AutocompleteIndex authors = new AutocompleteIndex();
+        for (BookSummary book : readModel.getBookSummaries(null)) {
+            int loans = bookLoans.getOrDefault(book.isbn(), 0);
+            titles.put(book.isbn(), book.title(), loans);
+            authors.put(book.isbn(), book.author(), loans);
+        }
+        
+        AutocompleteIndex userNames = new AutocompleteIndex();
+        for (UserSummary user : readModel.getUserSummaries(false)) {
+            userNames.put(user.userId(), user.name(), userLoans.getOrDefault(user.userId(), 0));
+        }
+        
+        authorSuggestions = authors;
+        userNameSuggestions = userNames;
+        titleSuggestions = titles;
     }
     
     public List<User> getActiveUsers() {
-        return userDAO.findActiveUsers();
+        return readModel.getActiveUsers();
     }
     
     public List<BorrowTransaction> getTransactionsByUser(String userId) {
@@ -316,15 +1168,478 @@ public class DatabaseLibrary {
     }
     
     public List<BorrowTransaction> getTransactionsByBook(String isbn) {
-        return transactionDAO.findByBookIsbn(isbn);
+        Book book = readModel.getBook(isbn);
+        return transactionDAO.findByBookIsbn((book != null) ? book.getIsbn() : isbn);
+    }
+    
+    // Semester-start registration: chunked transactions, duplicates by ID or email are skipped
+    public BulkOperationResult importUsers(Iterator<User> users, Consumer<BulkOperationResult> progress) {
+        BulkOperationResult result = userDAO.importUsers(users, progress);
+        if (result.applied() > 0) {
+            putUsersAndJournal(userDAO.findAll());
+            // Rebuilt on next use rather than patched one user at a time
+            synchronized (indexLock) {
+                titleSuggestions = null;
+            }
+        }
+        return result;
+    }
+    
+    public BulkOperationResult deactivateUsers(Collection<String> userIds, Consumer<BulkOperationResult> progress) {
+        return refreshUsersAfter(userDAO.deactivateUsers(userIds, progress));
+    }
+    
+    public BulkOperationResult deactivateUsersWhere(Predicate<UserSummary> predicate, Consumer<BulkOperationResult> progress) {
+        return refreshUsersAfter(userDAO.deactivateUsersWhere(predicate, progress));
+    }
+    
+    // Bulk changes run without stripe locks; the read model's version check keeps any newer row it already has
+    private BulkOperationResult refreshUsersAfter(BulkOperationResult result) {
+        if (result.applied() > 0) {
+            putUsersAndJournal(userDAO.findAll());
+            List<Hold> orphaned = new ArrayList<>();
+            for (Hold hold : holdDAO.findActive()) {
+                User user = readModel.getUser(hold.userId());
+                if (user != null && !user.isActive()) {
+                    orphaned.add(hold);
+                }
+            }
+            cancelHolds(orphaned);
+        }
+        return result;
+    }
+    
+    // Bulk changes journal every row newer than the read model's copy; their holds are journaled as they close
+    private void putUsersAndJournal(List<User> users) {
+        List<CirculationEvent> events = new ArrayList<>();
+        for (User user : users) {
+            User known = readModel.getUser(user.getUserId());
+            if (known == null || known.getVersion() < user.getVersion()) {
+                events.add(CirculationEvent.UserChanged.of(user));
+            }
+        }
+        readModel.putUsers(users);
+        journal(events);
     }
     
     public boolean updateUserStatus(String userId, boolean isActive) {
+        try {
+            return updateUser(userId, user -> user.setActive(isActive));
+        } catch (OptimisticLockException e) {
+            System.err.println("❌ User not updated: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    public boolean updateUser(String userId, Consumer<User> edit) {
+        return retryOnConflict(DEFAULT_CONFLICT_ATTEMPTS, () -> {
+            User user = userDAO.findById(userId);
+            if (user == null) return false;
+            
+            edit.accept(user);
+            return saveUser(user);
+        });
+    }
+    
+    // Throws OptimisticLockException if a borrow, return or another edit saved the user after this copy was read
+    public boolean saveUser(User user) {
+        boolean updated;
+        try (StripedLock.Held held = locks.lock(userLockKey(user.getUserId()))) {
+            if (!awaitWriteBehind()) return false;
+            updated = userDAO.updateUser(user);
+            if (updated) {
+                refreshUser(user.getUserId());
+                journal(CirculationEvent.UserChanged.of(user));
+                synchronized (indexLock) {
+                    if (userNameSuggestions != null) {
+                        userNameSuggestions.rename(user.getUserId(), user.getName());
+                    }
+                }
+            }
+        }
+        // After the user lock is released, since each hold also needs its book's
+        if (updated && !user.isActive()) {
+            cancelHolds(holdDAO.findByUser(user.getUserId()));
+        }
+        return updated;
+    }
+    
+    // Runs the attempt again each time it loses a version race, so every attempt must re-read what it changes.
+    // After the last attempt the conflict is rethrown for the caller to report.
+    public <T> T retryOnConflict(int maxAttempts, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockException e) {
+                if (attemptNumber >= maxAttempts) throw e;
+                System.err.println("⚠️ " + e.getMessage() + " - retrying (" + attemptNumber + "/" + maxAttempts + ")");
+                
+                // Jittered so two writers that just collided do not retry in lockstep
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attemptNumber + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    // Read model upkeep: rows are read back after commit, while the caller's stripe locks still order the refresh
+    private void refreshBook(String isbn) {
+        Book book = bookDAO.findByIsbn(isbn);
+        if (book != null) {
+            readModel.putBook(book);
+        } else {
+            readModel.removeBook(isbn);
+        }
+    }
+    
+    private void refreshBooks(Collection<String> isbns) {
+        readModel.putBooks(bookDAO.findByIsbns(isbns).values());
+    }
+    
+    private void refreshUser(String userId) {
         User user = userDAO.findById(userId);
-        if (user == null) return false;
+        if (user != null) {
+            readModel.putUser(user);
+        }
+    }
+    
+    private void refreshTransactions(List<String> transactionIds) {
+        readModel.putTransactions(transactionDAO.findByIds(transactionIds));
+    }
+    
+    // Replaces the read model with a fresh load, e.g. after changes made behind this class's back
+    public void reloadReadModel() {
+        if (!awaitWriteBehind()) return;
+        loadReadModel();
+    }
+    
+    private void loadReadModel() {
+        long started = System.currentTimeMillis();
+        readModel.load(bookDAO.findAll(), userDAO.findAll(), transactionDAO.findActiveTransactions(),
+                transactionDAO.getReturnedTotals());
+        Map<String, Integer> stats = readModel.getStatistics();
+        System.out.println("📚 Read model loaded: " + stats.get("Total Books") + " books, " + stats.get("Total Users") +
+                " users, " + stats.get("Active Transactions") + " open loans in " + (System.currentTimeMillis() - started) + " ms");
+    }
+    
+    // Compares every book, user and loan in the read model with the database; an empty list means they agree
+    public List<String> checkReadModel() {
+        if (!awaitWriteBehind()) return List.of("Write-behind queue has not caught up with the database");
+        List<String> differences = readModel.compareWith(bookDAO.findAll(), userDAO.findAll(), transactionDAO.findActiveTransactions());
+        if (differences.isEmpty()) {
+            System.out.println("✅ Read model matches the database");
+        } else {
+            System.err.println("⚠️ Read model differs from the database in " + differences.size() + " place(s)");
+        }
+        return differences;
+    }
+    
+    // For book fairs and other rush periods: borrows and returns without holds are checked against the read model,
+    // acknowledged at once and written to the database within maxLagMillis in batches. A full queue makes new
+    // borrows and returns wait for room. Holds, carts and edits still write through, once the queue has caught up.
+    public void enableWriteBehind() {
+        SettingsDAO settings = new SettingsDAO();
+        enableWriteBehind(settings.getIntSetting("write_behind_max_lag_ms", DEFAULT_WRITE_BEHIND_LAG_MILLIS),
+                settings.getIntSetting("write_behind_queue_capacity", DEFAULT_WRITE_BEHIND_CAPACITY));
+    }
+    
+    public synchronized void enableWriteBehind(long maxLagMillis, int capacity) {
+        if (writeBehind != null) return;
+        writeBehind = new WriteBehindQueue<>("circulation-write-behind", capacity, maxLagMillis, this::persistCirculation,
+                changes -> discardCirculation(changes, "the database kept refusing its batch"));
+        DatabaseManager.getInstance().addShutdownTask(writeBehindShutdown);
+        System.out.println("⚡ Write-behind enabled: up to " + capacity + " changes, " + maxLagMillis + " ms behind");
+    }
+    
+    // Writes out everything still queued before going back to write-through; the shutdown hook calls this too.
+    // The queue stays visible while it drains, so write-through paths keep waiting for it.
+    public synchronized void disableWriteBehind() {
+        WriteBehindQueue<PendingCirculation> queue = writeBehind;
+        if (queue == null) return;
+        queue.close();
+        writeBehind = null;
+        DatabaseManager.getInstance().removeShutdownTask(writeBehindShutdown);
+    }
+    
+    // False once the queue has dead-lettered a batch and gone back to write-through; disable and enable to resume
+    public boolean isWriteBehindEnabled() {
+        WriteBehindQueue<PendingCirculation> queue = writeBehind;
+        return queue != null && queue.isAccepting();
+    }
+    
+    public String getWriteBehindSummary() {
+        WriteBehindQueue<PendingCirculation> queue = writeBehind;
+        return (queue != null) ? queue.getSummary() : "write-through";
+    }
+    
+    // Write-through paths read the database, so whatever is still queued is written first. The flusher takes no
+    // stripe locks, so callers may hold theirs while they wait; false means it did not catch up in time and the
+    // caller must not go on.
+    private boolean awaitWriteBehind() {
+        WriteBehindQueue<PendingCirculation> queue = writeBehind;
+        if (queue == null || queue.flush()) return true;
+        System.err.println("❌ Write-behind queue did not catch up: " + queue.getSummary());
+        return false;
+    }
+    
+    // A change that no longer fits the database, e.g. a return of a loan an edit already closed, is left out and
+    // the rest written again, so one bad change never takes the batch or the database state down with it.
+    // Queued changes are journaled here, once committed, so a dead letter never reaches the journal.
+    private boolean persistCirculation(List<PendingCirculation> batch) {
+        Set<String> conflicts = new HashSet<>();
+        List<PendingCirculation> writing = batch;
+        while (!writing.isEmpty()) {
+            BatchOutcome outcome = writeCirculation(writing, conflicts);
+            if (outcome == BatchOutcome.FAILED) return false;
+            if (outcome == BatchOutcome.WRITTEN) break;
+            
+            writing = new ArrayList<>();
+            for (PendingCirculation change : batch) {
+                BorrowTransaction transaction = change.transaction();
+                if (!conflicts.contains(bookLockKey(transaction.getBookIsbn())) && !conflicts.contains(userLockKey(transaction.getUserId()))
+                        && !conflicts.contains(transaction.getTransactionId())) {
+                    writing.add(change);
+                }
+            }
+        }
         
-        user.setActive(isActive);
-        return userDAO.updateUser(user);
+        if (writing.size() < batch.size()) {
+            List<PendingCirculation> rejected = new ArrayList<>(batch);
+            rejected.removeAll(writing);
+            discardCirculation(rejected, "it no longer matches the database");
+        }
+        if (!writing.isEmpty()) {
+            List<BorrowTransaction> applied = new ArrayList<>(writing.size());
+            writing.forEach(change -> applied.add(change.transaction()));
+            readModel.markPersisted(applied, bookDAO.findByIsbns(isbnsOf(applied)).values(),
+                    userDAO.findByIds(userIdsOf(applied)).values(), transactionDAO.findByIds(transactionIdsOf(applied)));
+            journal(applied.stream().map(DatabaseLibrary::circulationEventOf).toList());
+        }
+        return true;
+    }
+    
+    // One transaction per batch. Each book and user is written once with its net change, a loan returned before
+    // it reached the database is inserted already closed, and rollups are summed per genre and hour. Rows that
+    // don't match the expected state are added to conflicts and the transaction rolled back.
+    private BatchOutcome writeCirculation(List<PendingCirculation> batch, Set<String> conflicts) {
+        Map<String, StatusChange> statuses = new LinkedHashMap<>();
+        Map<String, SlotChange> slotChanges = new LinkedHashMap<>();
+        Map<String, BorrowTransaction> inserts = new LinkedHashMap<>();
+        Map<String, BorrowTransaction> returns = new LinkedHashMap<>();
+        // genre -> hour -> loans, returns, overdue returns, fines
+        Map<String, Map<Long, double[]>> rollups = new HashMap<>();
+        
+        for (PendingCirculation change : batch) {
+            BorrowTransaction transaction = change.transaction();
+            String transactionId = transaction.getTransactionId();
+            boolean returned = transaction.isReturned();
+            
+            statuses.merge(transaction.getBookIsbn(), returned
+                            ? new StatusChange(Book.BookStatus.BORROWED, Book.BookStatus.AVAILABLE, change.bookVersion())
+                            : new StatusChange(Book.BookStatus.AVAILABLE, Book.BookStatus.BORROWED, change.bookVersion()),
+                    (first, next) -> new StatusChange(first.from(), next.to(), next.version()));
+            slotChanges.merge(transaction.getUserId(), new SlotChange(returned ? -1 : 1, change.userVersion()),
+                    (first, next) -> new SlotChange(first.delta() + next.delta(), next.version()));
+            if (!returned || inserts.containsKey(transactionId)) {
+                inserts.put(transactionId, transaction);
+            } else {
+                returns.put(transactionId, transaction);
+            }
+            
+            long time = returned ? transaction.getReturnTime() : transaction.getBorrowTime();
+            double[] totals = rollups.computeIfAbsent(change.genre(), genre -> new HashMap<>())
+                    .computeIfAbsent(RollupDAO.Granularity.HOUR.bucketStart(time), hour -> new double[4]);
+            if (returned) {
+                totals[1]++;
+                totals[2] += transaction.isOverdue() ? 1 : 0;
+                totals[3] += transaction.getFineAmount();
+            } else {
+                totals[0]++;
+            }
+        }
+        
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        try {
+            dbManager.beginTransaction();
+            int conflictsBefore = conflicts.size();
+            // Rows whose changes cancel out are still written, to carry the version forward
+            for (Map.Entry<String, StatusChange> entry : statuses.entrySet()) {
+                StatusChange status = entry.getValue();
+                if (!bookDAO.applyStatus(entry.getKey(), status.from(), status.to(), status.version())) {
+                    System.err.println("⚠️ Write-behind expected " + entry.getKey() + " to be " + status.from());
+                    conflicts.add(bookLockKey(entry.getKey()));
+                }
+            }
+            for (Map.Entry<String, SlotChange> entry : slotChanges.entrySet()) {
+                SlotChange slots = entry.getValue();
+                if (!userDAO.adjustBorrowSlots(entry.getKey(), slots.delta(), slots.version())) {
+                    System.err.println("⚠️ Borrowed books count for " + entry.getKey() + " could not change by " + slots.delta());
+                    conflicts.add(userLockKey(entry.getKey()));
+                }
+            }
+            for (BorrowTransaction transaction : returns.values()) {
+                if (!transactionDAO.completeReturn(transaction)) {
+                    System.err.println("⚠️ Write-behind return of " + transaction.getTransactionId() + " found it already returned");
+                    conflicts.add(transaction.getTransactionId());
+                }
+            }
+            if (conflicts.size() > conflictsBefore) {
+                dbManager.rollback();
+                return BatchOutcome.CONFLICT;
+            }
+            for (BorrowTransaction transaction : inserts.values()) {
+                transactionDAO.insertTransaction(transaction);
+            }
+            rollups.forEach((genre, hours) -> hours.forEach((hour, totals) -> {
+                if (!rollupDAO.recordTotals(genre, hour, (int) totals[0], (int) totals[1], (int) totals[2], totals[3])) {
+                    System.err.println("⚠️ Circulation rollups missed a write-behind batch for " + genre);
+                }
+            }));
+            dbManager.commit();
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Write-behind batch of " + batch.size() + " failed: " + e.getMessage());
+            return BatchOutcome.FAILED;
+        }
+        return BatchOutcome.WRITTEN;
+    }
+    
+    // Dead letters: changes that were acknowledged but will never reach the database. Each is logged for the desk
+    // to follow up, and the read model falls back to the database rows once nothing else is queued for them.
+    private void discardCirculation(List<PendingCirculation> changes, String reason) {
+        List<BorrowTransaction> discarded = new ArrayList<>(changes.size());
+        for (PendingCirculation change : changes) {
+            BorrowTransaction transaction = change.transaction();
+            discarded.add(transaction);
+            System.err.println("❌ Write-behind " + (transaction.isReturned() ? "return" : "borrow") + " " +
+                    transaction.getTransactionId() + " of " + transaction.getBookIsbn() + " by " + transaction.getUserId() +
+                    " was not saved because " + reason);
+        }
+        readModel.discardCirculation(discarded, bookDAO.findByIsbns(isbnsOf(discarded)).values(),
+                userDAO.findByIds(userIdsOf(discarded)).values(), transactionDAO.findByIds(transactionIdsOf(discarded)));
+    }
+    
+    private static CirculationEvent circulationEventOf(BorrowTransaction transaction) {
+        return transaction.isReturned()
+                ? CirculationEvent.BookReturned.of(transaction)
+                : CirculationEvent.BookBorrowed.of(transaction);
+    }
+    
+    private static List<String> isbnsOf(List<BorrowTransaction> transactions) {
+        return transactions.stream().map(BorrowTransaction::getBookIsbn).distinct().toList();
+    }
+    
+    private static List<String> userIdsOf(List<BorrowTransaction> transactions) {
+        return transactions.stream().map(BorrowTransaction::getUserId).distinct().toList();
+    }
+    
+    private static List<String> transactionIdsOf(List<BorrowTransaction> transactions) {
+        return transactions.stream().map(BorrowTransaction::getTransactionId).distinct().toList();
+    }
+    
+    // Call before serving requests. An empty journal is seeded with a snapshot of the database as it stands,
+    // so replay starts from the current collection rather than from nothing.
+    public boolean attachJournal(CirculationJournal journal) {
+        try {
+            if (journal.isEmpty()) {
+                journal.writeSnapshot(snapshotOfDatabase(), 0);
+            }
+            this.journal = journal;
+            System.out.println("📓 Circulation journal attached: " + journal.getDirectory());
+            return true;
+            
+        } catch (IOException e) {
+            System.err.println("❌ Failed to attach circulation journal: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // After a failed journal write, once the cause is fixed: snapshots the database over the events that were lost
+    public boolean reseedJournal() {
+        CirculationJournal target = journal;
+        if (target == null || !target.isFailed()) return false;
+        try {
+            if (!awaitWriteBehind()) return false;
+            target.reseed(snapshotOfDatabase());
+            System.out.println("📓 Circulation journal reseeded at sequence " + target.getLastSequence());
+            return true;
+            
+        } catch (IOException e) {
+            System.err.println("❌ Failed to reseed circulation journal: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private Library snapshotOfDatabase() {
+        Library library = new Library(libraryName, address);
+        getAllUsers().forEach(library::restoreUser);
+        getAllBooks().forEach(library::restoreBook);
+        List<BorrowTransaction> transactions = getAllTransactions();
+        transactions.sort(Comparator.comparing(BorrowTransaction::isReturned).reversed());
+        transactions.forEach(library::restoreTransaction);
+        library.rebuildOverdueSchedule();
+        return library;
+    }
+    
+    public CirculationJournal getJournal() {
+        return journal;
+    }
+    
+    private void journal(CirculationEvent... events) {
+        journal(Arrays.asList(events));
+    }
+    
+    // The database has already committed, so a journal failure is reported but never undoes the change
+    private void journal(List<CirculationEvent> events) {
+        CirculationJournal target = journal;
+        if (target == null || events.isEmpty()) return;
+        try {
+            target.appendAll(events);
+        } catch (IOException e) {
+            if (target.isFailed()) {
+                System.err.println("❌ Circulation journal is stopped, " + events.size() + " event(s) not recorded - call reseedJournal() once the cause is fixed");
+            } else {
+                System.err.println("⚠️ Circulation journal missed " + events.size() + " event(s): " + e.getMessage());
+            }
+        }
+    }
+    
+    // Different spellings of one ISBN must land on the same stripe
+    private static String bookLockKey(String isbn) {
+        long key = Isbn.toKey(isbn);
+        return "book:" + (key != Isbn.NO_KEY ? Isbn.format(key) : isbn);
+    }
+    
+    private static String userLockKey(String userId) {
+        return "user:" + userId;
+    }
+    
+    public List<StripedLock.StripeStats> getLockContention(int limit) {
+        return locks.getHotStripes(limit);
+    }
+    
+    public String getLockSummary() {
+        return locks.getSummary();
+    }
+    
+    // Call after mass deletions so removed keys stop passing the filters
+    public void rebuildExistenceFilters() {
+        bookDAO.rebuildIsbnFilter();
+        userDAO.rebuildUserIdFilter();
+    }
+    
+    public void printExistenceFilterInfo() {
+        System.out.println("\n🔎 EXISTENCE FILTERS:");
+        System.out.println("ISBN filter:    " + bookDAO.getIsbnFilterSummary());
+        System.out.println("User ID filter: " + userDAO.getUserIdFilterSummary());
     }
     
     public void initializeSampleData() {
@@ -339,16 +1654,18 @@ public class DatabaseLibrary {
         if (userDAO.getTotalUserCount() == 0) {
             userDAO.insertSampleUsers();
         }
+        reloadReadModel();
         
         System.out.println("✅ Sample data initialization complete");
     }
     
     @Override
     public String toString() {
+        Map<String, Integer> stats = readModel.getStatistics();
         return String.format("DatabaseLibrary{Name='%s', Books=%d, Users=%d, Active Transactions=%d}",
                 libraryName, 
-                bookDAO.getTotalBookCount(), 
-                userDAO.getTotalUserCount(), 
-                getActiveTransactions().size());
+                stats.get("Total Books"), 
+                stats.get("Total Users"), 
+                stats.get("Active Transactions"));
     }
 }
\ No newline at end of file
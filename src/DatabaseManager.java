@@ -1,10 +1,67 @@
 import java.sql.*;
 import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class DatabaseManager {
     private static final String DATABASE_URL = "jdbc:sqlite:library.db";
+    // How long a writer waits for another connection's write lock before failing with SQLITE_BUSY
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
     private static DatabaseManager instance;
-    private Connection connection;
+    
+    // Each thread works on its own connection, so one thread's transaction never absorbs another's statements
+    private final ThreadLocal<Connection> threadConnection = new ThreadLocal<>();
+    private final Set<Connection> openConnections = ConcurrentHashMap.newKeySet();
+    // Connections handed back by finished leases, reused so short-lived threads do not each open one
+    private final ConcurrentLinkedQueue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+    // Run by the shutdown hook while the connections are still open, e.g. to write out changes queued in memory
+    private final CopyOnWriteArrayList<Runnable> shutdownTasks = new CopyOnWriteArrayList<>();
+    
+    // Binds a pooled connection to the current thread until closed
+    public final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final Connection previous;
+        
+        private Lease(Connection connection, Connection previous) {
+            this.connection = connection;
+            this.previous = previous;
+        }
+        
+        // SQLite interrupts whatever is running on the connection, so any Statement on it reaches the one in flight
+        public void cancel() {
+            try (Statement statement = connection.createStatement()) {
+                statement.cancel();
+            } catch (SQLException e) {
+                System.err.println("⚠️ Failed to cancel statement: " + e.getMessage());
+            }
+        }
+        
+        @Override
+        public void close() {
+            if (previous != null) {
+                threadConnection.set(previous);
+            } else {
+                threadConnection.remove();
+            }
+            
+            try {
+                if (connection.isClosed()) return;
+                // Work abandoned mid-transaction must not leak into the next lease
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idleConnections.offer(connection);
+            } catch (SQLException e) {
+                openConnections.remove(connection);
+                closeQuietly(connection);
+            }
+        }
+    }
     
     private DatabaseManager() {
         initializeDatabase();
@@ -24,9 +81,7 @@ public class DatabaseManager {
             File dbFile = new File("library.db");
             boolean isNewDatabase = !dbFile.exists();
             
-            connection = DriverManager.getConnection(DATABASE_URL);
-            
-            connection.setAutoCommit(false);
+            threadConnection.set(openConnection());
             
             System.out.println("✅ Database connection established: " + DATABASE_URL);
             if (isNewDatabase) {
@@ -45,10 +100,24 @@ public class DatabaseManager {
         }
     }
     
+    // WAL lets readers on other connections proceed while one connection writes
+    private Connection openConnection() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("journal_mode", "WAL");
+        properties.setProperty("busy_timeout", String.valueOf(BUSY_TIMEOUT_MILLIS));
+        
+        Connection connection = DriverManager.getConnection(DATABASE_URL, properties);
+        connection.setAutoCommit(true);
+        openConnections.add(connection);
+        return connection;
+    }
+    
     public Connection getConnection() {
         try {
+            Connection connection = threadConnection.get();
             if (connection == null || connection.isClosed()) {
-                initializeDatabase();
+                connection = openConnection();
+                threadConnection.set(connection);
             }
             return connection;
         } catch (SQLException e) {
@@ -56,19 +125,40 @@ public class DatabaseManager {
         }
     }
     
-    public void executeUpdate(String sql, Object... parameters) throws SQLException {
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    public Lease leaseConnection() throws SQLException {
+        Connection connection = idleConnections.poll();
+        while (connection != null && connection.isClosed()) {
+            connection = idleConnections.poll();
+        }
+        if (connection == null) {
+            connection = openConnection();
+        }
+        
+        Lease lease = new Lease(connection, threadConnection.get());
+        threadConnection.set(connection);
+        return lease;
+    }
+    
+    public int executeUpdate(String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
             setParameters(statement, parameters);
-            statement.executeUpdate();
+            return statement.executeUpdate();
         }
     }
     
     public ResultSet executeQuery(String sql, Object... parameters) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(sql);
+        PreparedStatement statement = getConnection().prepareStatement(sql);
         setParameters(statement, parameters);
         return statement.executeQuery();
     }
     
+    // Current version of one row, or null once it is gone; tells a stale save apart from a missing row
+    public Long findRowVersion(String table, String keyColumn, Object key) throws SQLException {
+        try (ResultSet rs = executeQuery("SELECT version FROM " + table + " WHERE " + keyColumn + " = ?", key)) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+    
     private void setParameters(PreparedStatement statement, Object... parameters) throws SQLException {
         for (int i = 0; i < parameters.length; i++) {
             Object param = parameters[i];
@@ -90,26 +180,51 @@ public class DatabaseManager {
         }
     }
     
+    // Outside beginTransaction every statement has already committed, so there is nothing to do
     public void commit() throws SQLException {
-        connection.commit();
+        Connection connection = getConnection();
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
     }
     
     public void rollback() throws SQLException {
-        connection.rollback();
+        Connection connection = getConnection();
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
     }
     
-    public void beginTransaction() throws SQLException {
-        connection.setAutoCommit(false);
+    // Lets one item of a multi-item operation be undone without losing the others
+    public Savepoint setSavepoint() throws SQLException {
+        return getConnection().setSavepoint();
     }
     
-    public void endTransaction() throws SQLException {
-        connection.setAutoCommit(true);
+    public void rollback(Savepoint savepoint) throws SQLException {
+        getConnection().rollback(savepoint);
+    }
+    
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        getConnection().releaseSavepoint(savepoint);
+    }
+    
+    // Connections run in auto-commit, so no read snapshot outlives its query. beginTransaction opens one explicit
+    // transaction, which only commit() or rollback() ends; both return the connection to auto-commit. Transactions
+    // don't nest: an inner commit would end the outer one halfway, so a second begin fails instead.
+    public void beginTransaction() throws SQLException {
+        Connection connection = getConnection();
+        if (!connection.getAutoCommit()) {
+            throw new SQLException("A transaction is already open on this connection");
+        }
+        connection.setAutoCommit(false);
     }
     
     public boolean testConnection() {
         try {
             String sql = "SELECT 1 as test";
-            try (PreparedStatement statement = connection.prepareStatement(sql);
+            try (PreparedStatement statement = getConnection().prepareStatement(sql);
                  ResultSet resultSet = statement.executeQuery()) {
                 
                 if (resultSet.next()) {
@@ -125,19 +240,59 @@ public class DatabaseManager {
         return false;
     }
     
+    // For worker threads that are about to finish; the next call on this thread opens a fresh connection
+    public void releaseConnection() {
+        Connection connection = threadConnection.get();
+        threadConnection.remove();
+        if (connection != null) {
+            openConnections.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+    
     public void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("📝 Database connection closed");
+        int closed = 0;
+        for (Connection connection : openConnections) {
+            try {
+                if (!connection.isClosed()) {
+                    connection.close();
+                    closed++;
+                }
+            } catch (SQLException e) {
+                System.err.println("⚠️ Error closing database connection: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("⚠️ Error closing database connection: " + e.getMessage());
         }
+        openConnections.clear();
+        idleConnections.clear();
+        if (closed > 0) {
+            System.out.println("📝 Database connection closed" + (closed > 1 ? " (" + closed + " connections)" : ""));
+        }
+    }
+    
+    public void addShutdownTask(Runnable task) {
+        shutdownTasks.addIfAbsent(task);
+    }
+    
+    public void removeShutdownTask(Runnable task) {
+        shutdownTasks.remove(task);
+    }
+    
+    private void runShutdownTasks() {
+        for (Runnable task : shutdownTasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Shutdown task failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    public int getOpenConnectionCount() {
+        return openConnections.size();
     }
     
     public void executeBatch(String[] sqlStatements) throws SQLException {
-        try (Statement statement = connection.createStatement()) {
+        try (Statement statement = getConnection().createStatement()) {
             beginTransaction();
             
             for (String sql : sqlStatements) {
@@ -157,7 +312,7 @@ public class DatabaseManager {
     
     public void printDatabaseInfo() {
         try {
-            DatabaseMetaData metaData = connection.getMetaData();
+            DatabaseMetaData metaData = getConnection().getMetaData();
             System.out.println("\n📊 DATABASE INFORMATION:");
             System.out.println("Database Product: " + metaData.getDatabaseProductName());
             System.out.println("Database Version: " + metaData.getDatabaseProductVersion());
@@ -166,7 +321,7 @@ public class DatabaseManager {
             System.out.println("Database URL: " + metaData.getURL());
             
             String sql = "SELECT name FROM sqlite_master WHERE type='table' ORDER BY name";
-            try (PreparedStatement statement = connection.prepareStatement(sql);
+            try (PreparedStatement statement = getConnection().prepareStatement(sql);
                  ResultSet resultSet = statement.executeQuery()) {
                 
                 System.out.println("\n📋 EXISTING TABLES:");
@@ -200,6 +355,7 @@ public class DatabaseManager {
     static {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             if (instance != null) {
+                instance.runShutdownTasks();
                 instance.closeConnection();
             }
         }));
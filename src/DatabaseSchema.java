@@ -1,6 +1,8 @@
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DatabaseSchema {
     private DatabaseManager dbManager;
@@ -12,12 +14,14 @@ public class DatabaseSchema {
     public void createAllTables() {
         try {
             System.out.println("🏗️  Creating database schema...");
+            dbManager.beginTransaction();
             
             createBooksTable();
             createUsersTable();
             createLibrariansTable();
             createTransactionsTable();
             createLibrarySettingsTable();
+            applySchemaUpgrades();
             
             dbManager.commit();
             System.out.println("✅ Database schema created successfully!");
@@ -37,11 +41,13 @@ public class DatabaseSchema {
         String sql = """
             CREATE TABLE IF NOT EXISTS books (
                 isbn TEXT PRIMARY KEY,
+                isbn_key INTEGER,
                 title TEXT NOT NULL,
                 author TEXT NOT NULL,
                 genre TEXT DEFAULT 'Unknown',
                 publication_year INTEGER DEFAULT 0,
                 status TEXT NOT NULL DEFAULT 'AVAILABLE',
+                version INTEGER NOT NULL DEFAULT 0,
                 created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 CONSTRAINT chk_status CHECK (status IN ('AVAILABLE', 'BORROWED', 'RESERVED', 'MAINTENANCE'))
@@ -69,11 +75,13 @@ public class DatabaseSchema {
                 user_id TEXT PRIMARY KEY,
                 name TEXT NOT NULL,
                 email TEXT NOT NULL UNIQUE,
+                email_normalized TEXT,
                 phone_number TEXT DEFAULT '',
                 registration_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 is_active BOOLEAN DEFAULT TRUE,
                 borrowed_books_count INTEGER DEFAULT 0,
                 max_books_limit INTEGER DEFAULT 5,
+                version INTEGER NOT NULL DEFAULT 0,
                 created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 CONSTRAINT chk_borrowed_books CHECK (borrowed_books_count >= 0),
@@ -133,6 +141,8 @@ public class DatabaseSchema {
                 return_date TIMESTAMP NULL,
                 is_returned BOOLEAN DEFAULT FALSE,
                 fine_amount DECIMAL(10,2) DEFAULT 0.00,
+                fine_accrued_date TIMESTAMP NULL,
+                version INTEGER NOT NULL DEFAULT 0,
                 created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 FOREIGN KEY (book_isbn) REFERENCES books(isbn) ON DELETE RESTRICT,
@@ -196,7 +206,19 @@ public class DatabaseSchema {
             "('fine_per_day', '0.50', 'Fine amount per day for overdue books')",
             
             "INSERT OR IGNORE INTO library_settings (setting_key, setting_value, description) VALUES " +
-            "('max_books_librarian', '10', 'Maximum books a librarian can borrow')"
+            "('max_books_librarian', '10', 'Maximum books a librarian can borrow')",
+            
+            "INSERT OR IGNORE INTO library_settings (setting_key, setting_value, description) VALUES " +
+            "('existence_filter_fpp', '0.01', 'Target false positive rate of the ISBN and user ID Bloom filters')",
+            
+            "INSERT OR IGNORE INTO library_settings (setting_key, setting_value, description) VALUES " +
+            "('fuzzy_search_budget_ms', '50', 'Time budget in milliseconds for one fuzzy book search')",
+            
+            "INSERT OR IGNORE INTO library_settings (setting_key, setting_value, description) VALUES " +
+            "('hold_pickup_days', '3', 'Days a returned book is kept for the next patron in its hold queue')",
+            
+            "INSERT OR IGNORE INTO library_settings (setting_key, setting_value, description) VALUES " +
+            "('overdue_check_interval_ms', '60000', 'How often loans that just became overdue are announced')"
         };
         
         for (String setting : defaultSettings) {
@@ -206,6 +228,184 @@ public class DatabaseSchema {
         System.out.println("⚙️  Default settings inserted");
     }
     
+    // Brings an existing database up to date; every step is idempotent
+    public void upgradeSchema() {
+        try {
+            dbManager.beginTransaction();
+            applySchemaUpgrades();
+            dbManager.commit();
+            System.out.println("✅ Database schema is up to date");
+        
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Failed to upgrade database schema: " + e.getMessage());
+            throw new RuntimeException("Schema upgrade failed", e);
+        }
+    }
+    
+    private void applySchemaUpgrades() throws SQLException {
+        createCoveringIndexes();
+        addColumnIfMissing("books", "isbn_key", "INTEGER");
+        backfillIsbnKeys();
+        addColumnIfMissing("users", "email_normalized", "TEXT");
+        backfillNormalizedEmails();
+        createSequencesTable();
+        addColumnIfMissing("transactions", "fine_accrued_date", "TIMESTAMP NULL");
+        createCirculationRollupsTable();
+        addColumnIfMissing("circulation_rollups", "overdue_loans", "INTEGER NOT NULL DEFAULT 0");
+        // Bumped by every UPDATE; whole-row saves only apply while the version they read is still current
+        addColumnIfMissing("books", "version", "INTEGER NOT NULL DEFAULT 0");
+        addColumnIfMissing("users", "version", "INTEGER NOT NULL DEFAULT 0");
+        addColumnIfMissing("transactions", "version", "INTEGER NOT NULL DEFAULT 0");
+        createHoldsTable();
+    }
+    
+    private void createHoldsTable() throws SQLException {
+        String sql = """
+            CREATE TABLE IF NOT EXISTS holds (
+                hold_id INTEGER PRIMARY KEY AUTOINCREMENT,
+                book_isbn TEXT NOT NULL,
+                user_id TEXT NOT NULL,
+                priority INTEGER NOT NULL DEFAULT 0,
+                placed_date INTEGER NOT NULL,
+                status TEXT NOT NULL DEFAULT 'WAITING',
+                ready_date INTEGER NULL,
+                expires_date INTEGER NULL,
+                closed_date INTEGER NULL,
+                FOREIGN KEY (book_isbn) REFERENCES books(isbn) ON DELETE CASCADE,
+                FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
+                CONSTRAINT chk_hold_status CHECK (status IN ('WAITING', 'READY', 'FULFILLED', 'CANCELLED', 'EXPIRED'))
+            )
+            """;
+        dbManager.executeUpdate(sql);
+        
+        // A patron queues at most once per book; closed holds stay as history
+        dbManager.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_holds_active_patron " +
+                "ON holds(book_isbn, user_id) WHERE status IN ('WAITING', 'READY')");
+        dbManager.executeUpdate("CREATE INDEX IF NOT EXISTS idx_holds_user ON holds(user_id, placed_date)");
+    }
+    
+    private void createSequencesTable() throws SQLException {
+        // Holds the next unreserved value of each IdSequence
+        String sql = """
+            CREATE TABLE IF NOT EXISTS sequences (
+                name TEXT PRIMARY KEY,
+                next_value INTEGER NOT NULL
+            )
+            """;
+        dbManager.executeUpdate(sql);
+    }
+    
+    private void createCirculationRollupsTable() throws SQLException {
+        // Key order lets a trend for one granularity and genre be read as a single range
+        String sql = """
+            CREATE TABLE IF NOT EXISTS circulation_rollups (
+                granularity TEXT NOT NULL,
+                genre TEXT NOT NULL,
+                bucket_start INTEGER NOT NULL,
+                loans INTEGER NOT NULL DEFAULT 0,
+                returns INTEGER NOT NULL DEFAULT 0,
+                overdue_loans INTEGER NOT NULL DEFAULT 0,
+                overdue_returns INTEGER NOT NULL DEFAULT 0,
+                fines DECIMAL(10,2) NOT NULL DEFAULT 0.00,
+                PRIMARY KEY (granularity, genre, bucket_start),
+                CONSTRAINT chk_granularity CHECK (granularity IN ('HOUR', 'DAY'))
+            )
+            """;
+        dbManager.executeUpdate(sql);
+    }
+    
+    private void addColumnIfMissing(String table, String column, String definition) throws SQLException {
+        try (ResultSet rs = dbManager.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        dbManager.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        System.out.println("🔧 Added column " + table + "." + column);
+    }
+    
+    private void backfillIsbnKeys() throws SQLException {
+        // Rows whose ISBN fails its checksum keep a NULL key and are looked up by the ISBN text
+        Set<Long> assignedKeys = new HashSet<>();
+        try (ResultSet rs = dbManager.executeQuery("SELECT isbn_key FROM books WHERE isbn_key IS NOT NULL")) {
+            while (rs.next()) {
+                assignedKeys.add(rs.getLong("isbn_key"));
+            }
+        }
+        
+        List<String> unkeyedIsbns = new ArrayList<>();
+        try (ResultSet rs = dbManager.executeQuery("SELECT isbn FROM books WHERE isbn_key IS NULL")) {
+            while (rs.next()) {
+                unkeyedIsbns.add(rs.getString("isbn"));
+            }
+        }
+        
+        int keyed = 0;
+        for (String isbn : unkeyedIsbns) {
+            long key = Isbn.toKey(isbn);
+            // A second spelling of an ISBN already keyed stays unkeyed rather than breaking the unique index
+            if (key != Isbn.NO_KEY && assignedKeys.add(key)) {
+                dbManager.executeUpdate("UPDATE books SET isbn_key = ? WHERE isbn = ?", key, isbn);
+                keyed++;
+            }
+        }
+        if (keyed > 0) {
+            System.out.println("🔧 Assigned numeric ISBN keys to " + keyed + " books");
+        }
+        
+        dbManager.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_books_isbn_key ON books(isbn_key)");
+    }
+    
+    private void backfillNormalizedEmails() throws SQLException {
+        // Normalized in Java rather than with SQL LOWER(), which only folds ASCII
+        Set<String> assignedEmails = new HashSet<>();
+        try (ResultSet rs = dbManager.executeQuery("SELECT email_normalized FROM users WHERE email_normalized IS NOT NULL")) {
+            while (rs.next()) {
+                assignedEmails.add(rs.getString("email_normalized"));
+            }
+        }
+        
+        List<String[]> pendingUsers = new ArrayList<>();
+        try (ResultSet rs = dbManager.executeQuery("SELECT user_id, email FROM users WHERE email_normalized IS NULL")) {
+            while (rs.next()) {
+                pendingUsers.add(new String[] {rs.getString("user_id"), rs.getString("email")});
+            }
+        }
+        
+        for (String[] pending : pendingUsers) {
+            String normalizedEmail = UserDAO.normalizeEmail(pending[1]);
+            if (assignedEmails.add(normalizedEmail)) {
+                dbManager.executeUpdate("UPDATE users SET email_normalized = ? WHERE user_id = ?", normalizedEmail, pending[0]);
+            } else {
+                System.err.println("⚠️ User " + pending[0] + " shares email " + pending[1] + " with another user except for case");
+            }
+        }
+        
+        dbManager.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_users_email_normalized ON users(email_normalized)");
+    }
+    
+    private void createCoveringIndexes() throws SQLException {
+        // Cover the summary projections so list views never touch the table rows
+        String[] indexStatements = {
+            "CREATE INDEX IF NOT EXISTS idx_books_title_summary ON books(title, isbn, author, status)",
+            "CREATE INDEX IF NOT EXISTS idx_books_status_summary ON books(status, title, isbn, author)",
+            "CREATE INDEX IF NOT EXISTS idx_users_name_summary ON users(name, user_id, is_active, borrowed_books_count)",
+            "CREATE INDEX IF NOT EXISTS idx_transactions_active_summary " +
+                "ON transactions(is_returned, due_date, transaction_id, book_isbn, user_id)"
+        };
+        
+        for (String sql : indexStatements) {
+            dbManager.executeUpdate(sql);
+        }
+    }
+    
     public boolean tablesExist() {
         try {
             String[] requiredTables = {"books", "users", "librarians", "transactions", "library_settings"};
@@ -231,6 +431,8 @@ public class DatabaseSchema {
             
             // Drop in reverse order due to foreign key constraints
             String[] dropStatements = {
+                "DROP TABLE IF EXISTS circulation_rollups",
+                "DROP TABLE IF EXISTS holds",
                 "DROP TABLE IF EXISTS transactions",
                 "DROP TABLE IF EXISTS librarians", 
                 "DROP TABLE IF EXISTS library_settings",
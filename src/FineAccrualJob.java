@@ -0,0 +1,140 @@
+import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class FineAccrualJob {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    
+    public record Summary(int transactionsUpdated, int chunks, double finePerDay, double totalOutstanding, long elapsedMillis) {
+        
+        public String getFormattedInfo() {
+            return String.format("💰 Fines accrued on %d loans in %d chunks at $%.2f/day | Outstanding $%.2f | %d ms",
+                    transactionsUpdated, chunks, finePerDay, totalOutstanding, elapsedMillis);
+        }
+    }
+    
+    private final DatabaseManager dbManager;
+    private final SettingsDAO settingsDAO;
+    private final int chunkSize;
+    private ScheduledExecutorService scheduler;
+    // Told about every run, scheduled or not, e.g. so cached loans can pick up the new fines
+    private final List<Consumer<Summary>> completionListeners = new CopyOnWriteArrayList<>();
+    
+    public FineAccrualJob() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+    
+    public FineAccrualJob(int chunkSize) {
+        this.dbManager = DatabaseManager.getInstance();
+        this.settingsDAO = new SettingsDAO();
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+    
+    public Summary runOnce() {
+        return accrue(System.currentTimeMillis());
+    }
+    
+    // Fines are recomputed from the due date rather than incremented, so a repeated run for the same day changes
+    // nothing, and loans already accrued for a later day than asOf are left alone
+    public Summary accrue(long asOf) {
+        long started = System.currentTimeMillis();
+        double finePerDay = settingsDAO.getDoubleSetting("fine_per_day", BorrowTransaction.DEFAULT_FINE_PER_DAY);
+        ZoneId zone = ZoneId.systemDefault();
+        long startOfDay = Instant.ofEpochMilli(asOf).atZone(zone).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+        
+        String pendingSql = """
+            WHERE is_returned = FALSE AND due_date <= ?
+            AND (fine_accrued_date IS NULL OR fine_accrued_date < ?)
+            """;
+        String updateSql = """
+            UPDATE transactions
+            SET fine_amount = ROUND(((? - due_date) / 86400000) * ?, 2),
+                fine_accrued_date = ?,
+                version = version + 1,
+                updated_date = CURRENT_TIMESTAMP
+            """ + pendingSql + "AND rowid > ? AND rowid <= ?";
+        
+        int updated = 0;
+        int chunks = 0;
+        try {
+            long lowest;
+            long highest;
+            try (ResultSet rs = dbManager.executeQuery("SELECT MIN(rowid), MAX(rowid) FROM transactions " + pendingSql,
+                    asOf - DAY_MILLIS, startOfDay)) {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    return finish(0, 0, finePerDay, started);
+                }
+                lowest = rs.getLong(1) - 1;
+                highest = rs.getLong(2);
+            }
+            
+            // One statement per rowid range keeps each write lock short on a large table
+            for (long from = lowest; from < highest; from += chunkSize) {
+                dbManager.beginTransaction();
+                updated += dbManager.executeUpdate(updateSql, asOf, finePerDay, asOf,
+                        asOf - DAY_MILLIS, startOfDay, from, Math.min(from + chunkSize, highest));
+                dbManager.commit();
+                chunks++;
+            }
+        
+        } catch (SQLException e) {
+            System.err.println("❌ Fine accrual stopped after " + updated + " loans: " + e.getMessage());
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+        }
+        return finish(updated, chunks, finePerDay, started);
+    }
+    
+    private Summary finish(int updated, int chunks, double finePerDay, long started) {
+        double outstanding = 0;
+        try (ResultSet rs = dbManager.executeQuery("SELECT SUM(fine_amount) FROM transactions WHERE is_returned = FALSE")) {
+            if (rs.next()) {
+                outstanding = rs.getDouble(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error totalling outstanding fines: " + e.getMessage());
+        }
+        
+        Summary summary = new Summary(updated, chunks, finePerDay, outstanding, System.currentTimeMillis() - started);
+        System.out.println(summary.getFormattedInfo());
+        completionListeners.forEach(listener -> listener.accept(summary));
+        return summary;
+    }
+    
+    public void addCompletionListener(Consumer<Summary> listener) {
+        completionListeners.add(listener);
+    }
+    
+    // First run at the next local midnight, then once a day
+    public synchronized void start() {
+        if (scheduler != null) return;
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fine-accrual");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        long initialDelay = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        scheduler.scheduleAtFixedRate(this::runOnce, initialDelay, DAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+public record Hold(long holdId, String bookIsbn, String userId, int priority, long placedTime,
+                   Status status, long readyTime, long expiresTime) {
+    
+    public enum Status {
+        WAITING,
+        READY,
+        FULFILLED,
+        CANCELLED,
+        EXPIRED
+    }
+    
+    public static final int NORMAL_PRIORITY = 0;
+    
+    public boolean isActive() {
+        return status == Status.WAITING || status == Status.READY;
+    }
+    
+    public boolean isExpired(long now) {
+        return status == Status.READY && now > expiresTime;
+    }
+    
+    public Hold withId(long holdId) {
+        return new Hold(holdId, bookIsbn, userId, priority, placedTime, status, readyTime, expiresTime);
+    }
+    
+    public Hold ready(long readyTime, long expiresTime) {
+        return new Hold(holdId, bookIsbn, userId, priority, placedTime, Status.READY, readyTime, expiresTime);
+    }
+    
+    public String getFormattedInfo() {
+        return switch (status) {
+            case READY -> String.format("📦 Hold %d - Book: %s | User: %s | Ready until %tm/%<td/%<tY",
+                    holdId, bookIsbn, userId, expiresTime);
+            case WAITING -> String.format("⏳ Hold %d - Book: %s | User: %s | Priority: %d | Placed %tm/%<td/%<tY",
+                    holdId, bookIsbn, userId, priority, placedTime);
+            default -> String.format("🗄️ Hold %d - Book: %s | User: %s | %s", holdId, bookIsbn, userId, status);
+        };
+    }
+}
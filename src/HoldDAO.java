@@ -0,0 +1,85 @@
+import java.sql.*;
+import java.util.*;
+
+public class HoldDAO {
+    private DatabaseManager dbManager;
+    
+    public HoldDAO() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+    
+    // Returns the hold with its assigned ID, or null if it could not be stored
+    public Hold createHold(Hold hold) {
+        String sql = """
+            INSERT INTO holds (book_isbn, user_id, priority, placed_date, status)
+            VALUES (?, ?, ?, ?, ?)
+            RETURNING hold_id
+            """;
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, hold.bookIsbn(), hold.userId(), hold.priority(),
+                hold.placedTime(), hold.status().name())) {
+            if (!rs.next()) return null;
+            Hold created = hold.withId(rs.getLong("hold_id"));
+            dbManager.commit();
+            System.out.println("✅ Hold placed: " + created.holdId() + " on " + hold.bookIsbn() + " for " + hold.userId());
+            return created;
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Failed to place hold: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    // Joins the caller's transaction; false if the hold was no longer waiting
+    public boolean markReady(long holdId, long readyTime, long expiresTime) throws SQLException {
+        String sql = "UPDATE holds SET status = 'READY', ready_date = ?, expires_date = ? WHERE hold_id = ? AND status = 'WAITING'";
+        return dbManager.executeUpdate(sql, readyTime, expiresTime, holdId) > 0;
+    }
+    
+    // Joins the caller's transaction; moves an active hold to a closed status, false if it had already moved on
+    public boolean closeHold(long holdId, Hold.Status from, Hold.Status to) throws SQLException {
+        String sql = "UPDATE holds SET status = ?, closed_date = ? WHERE hold_id = ? AND status = ?";
+        return dbManager.executeUpdate(sql, to.name(), System.currentTimeMillis(), holdId, from.name()) > 0;
+    }
+    
+    // Startup source for HoldIndex
+    public List<Hold> findActive() {
+        return findHolds("SELECT * FROM holds WHERE status IN ('WAITING', 'READY')");
+    }
+    
+    public List<Hold> findByUser(String userId) {
+        return findHolds("SELECT * FROM holds WHERE user_id = ? ORDER BY placed_date DESC", userId);
+    }
+    
+    private List<Hold> findHolds(String sql, Object... parameters) {
+        List<Hold> holds = new ArrayList<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, parameters)) {
+            while (rs.next()) {
+                holds.add(mapResultSetToHold(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving holds: " + e.getMessage());
+        }
+        
+        return holds;
+    }
+    
+    private Hold mapResultSetToHold(ResultSet rs) throws SQLException {
+        return new Hold(
+            rs.getLong("hold_id"),
+            rs.getString("book_isbn"),
+            rs.getString("user_id"),
+            rs.getInt("priority"),
+            rs.getLong("placed_date"),
+            Hold.Status.valueOf(rs.getString("status")),
+            rs.getLong("ready_date"),
+            rs.getLong("expires_date")
+        );
+    }
+}
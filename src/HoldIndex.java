@@ -0,0 +1,210 @@
+import java.util.*;
+
+public class HoldIndex {
+    // Higher priority first, then first come first served
+    private static final Comparator<Hold> QUEUE_ORDER =
+            Comparator.comparingInt((Hold hold) -> -hold.priority())
+                    .thenComparingLong(Hold::placedTime)
+                    .thenComparingLong(Hold::holdId);
+    private static final Comparator<Hold> BY_EXPIRY =
+            Comparator.comparingLong(Hold::expiresTime).thenComparingLong(Hold::holdId);
+    
+    // Treap node keyed by queue order and heap-ordered by a random weight; size makes positions O(log n)
+    private static final class Node {
+        final Hold hold;
+        final int weight;
+        int size = 1;
+        Node left;
+        Node right;
+        
+        Node(Hold hold, int weight) {
+            this.hold = hold;
+            this.weight = weight;
+        }
+    }
+    
+    private final Random random = new Random();
+    // Waiting holds per stored ISBN
+    private final Map<String, Node> queues = new HashMap<>();
+    // Every active hold, waiting or ready, by id and by book and patron
+    private final Map<Long, Hold> holdsById = new HashMap<>();
+    private final Map<String, Hold> holdsByPatron = new HashMap<>();
+    // The ready hold on each reserved copy, and all ready holds in the order they lapse
+    private final Map<String, Hold> readyByIsbn = new HashMap<>();
+    private final TreeSet<Hold> readyByExpiry = new TreeSet<>(BY_EXPIRY);
+    
+    public synchronized void rebuild(Collection<Hold> activeHolds) {
+        queues.clear();
+        holdsById.clear();
+        holdsByPatron.clear();
+        readyByIsbn.clear();
+        readyByExpiry.clear();
+        for (Hold hold : activeHolds) {
+            add(hold);
+        }
+    }
+    
+    public synchronized void add(Hold hold) {
+        if (!hold.isActive()) return;
+        remove(hold.holdId());
+        
+        holdsById.put(hold.holdId(), hold);
+        holdsByPatron.put(patronKey(hold.bookIsbn(), hold.userId()), hold);
+        if (hold.status() == Hold.Status.READY) {
+            readyByIsbn.put(hold.bookIsbn(), hold);
+            readyByExpiry.add(hold);
+        } else {
+            queues.put(hold.bookIsbn(), insert(queues.get(hold.bookIsbn()), new Node(hold, random.nextInt())));
+        }
+    }
+    
+    public synchronized Hold remove(long holdId) {
+        Hold hold = holdsById.remove(holdId);
+        if (hold == null) return null;
+        
+        holdsByPatron.remove(patronKey(hold.bookIsbn(), hold.userId()));
+        if (hold.status() == Hold.Status.READY) {
+            readyByIsbn.remove(hold.bookIsbn());
+            readyByExpiry.remove(hold);
+        } else {
+            Node root = delete(queues.get(hold.bookIsbn()), hold);
+            if (root == null) {
+                queues.remove(hold.bookIsbn());
+            } else {
+                queues.put(hold.bookIsbn(), root);
+            }
+        }
+        return hold;
+    }
+    
+    // Next patron in line for a copy, or null when nobody is waiting
+    public synchronized Hold peekNext(String isbn) {
+        Node node = queues.get(isbn);
+        if (node == null) return null;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.hold;
+    }
+    
+    public synchronized Hold getReady(String isbn) {
+        return readyByIsbn.get(isbn);
+    }
+    
+    public synchronized Hold find(String isbn, String userId) {
+        return holdsByPatron.get(patronKey(isbn, userId));
+    }
+    
+    // 1 for the next patron in line, 0 when the copy is already waiting for pickup, -1 without an active hold
+    public synchronized int position(String isbn, String userId) {
+        Hold hold = holdsByPatron.get(patronKey(isbn, userId));
+        if (hold == null) return -1;
+        if (hold.status() == Hold.Status.READY) return 0;
+        return rank(queues.get(isbn), hold) + 1;
+    }
+    
+    public synchronized int waitingCount(String isbn) {
+        return size(queues.get(isbn));
+    }
+    
+    public synchronized boolean hasHolds(String isbn) {
+        return queues.containsKey(isbn) || readyByIsbn.containsKey(isbn);
+    }
+    
+    // O(log n + k) for k lapsed holds
+    public synchronized List<Hold> getExpired(long now) {
+        Hold probe = new Hold(Long.MAX_VALUE, "", "", 0, 0, Hold.Status.READY, 0, now - 1);
+        return new ArrayList<>(readyByExpiry.headSet(probe));
+    }
+    
+    public synchronized boolean hasExpired(long now) {
+        return !readyByExpiry.isEmpty() && readyByExpiry.first().expiresTime() < now;
+    }
+    
+    public synchronized int size() {
+        return holdsById.size();
+    }
+    
+    private static String patronKey(String isbn, String userId) {
+        return isbn + '\u0000' + userId;
+    }
+    
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+    
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+    
+    private static Node insert(Node root, Node node) {
+        if (root == null) return node;
+        if (node.weight > root.weight) {
+            Node[] parts = split(root, node.hold);
+            node.left = parts[0];
+            node.right = parts[1];
+            return update(node);
+        }
+        if (QUEUE_ORDER.compare(node.hold, root.hold) < 0) {
+            root.left = insert(root.left, node);
+        } else {
+            root.right = insert(root.right, node);
+        }
+        return update(root);
+    }
+    
+    private static Node delete(Node root, Hold hold) {
+        if (root == null) return null;
+        int order = QUEUE_ORDER.compare(hold, root.hold);
+        if (order == 0) return merge(root.left, root.right);
+        if (order < 0) {
+            root.left = delete(root.left, hold);
+        } else {
+            root.right = delete(root.right, hold);
+        }
+        return update(root);
+    }
+    
+    // Holds strictly before the key on the left, the rest on the right
+    private static Node[] split(Node root, Hold key) {
+        if (root == null) return new Node[2];
+        if (QUEUE_ORDER.compare(root.hold, key) < 0) {
+            Node[] parts = split(root.right, key);
+            root.right = parts[0];
+            parts[0] = update(root);
+            return parts;
+        }
+        Node[] parts = split(root.left, key);
+        root.left = parts[1];
+        parts[1] = update(root);
+        return parts;
+    }
+    
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.weight > right.weight) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+    
+    // Number of holds ahead of the given one
+    private static int rank(Node node, Hold hold) {
+        int ahead = 0;
+        while (node != null) {
+            int order = QUEUE_ORDER.compare(hold, node.hold);
+            if (order == 0) return ahead + size(node.left);
+            if (order < 0) {
+                node = node.left;
+            } else {
+                ahead += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return ahead;
+    }
+}
@@ -0,0 +1,89 @@
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdSequence {
+    // Values in [next, end) belong to this process alone
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+        
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+    
+    private final DatabaseManager dbManager;
+    private final String name;
+    private final int blockSize;
+    private final String seedSql;
+    private volatile Block block;
+    
+    // seedSql returns the highest value already in use; it only runs if the sequence row is missing
+    public IdSequence(String name, int blockSize, String seedSql) {
+        this.dbManager = DatabaseManager.getInstance();
+        this.name = name;
+        this.blockSize = Math.max(1, blockSize);
+        this.seedSql = seedSql;
+        this.block = new Block(0, 0);
+    }
+    
+    public long nextValue() throws SQLException {
+        while (true) {
+            Block current = block;
+            long value = current.next.getAndIncrement();
+            if (value < current.end) {
+                return value;
+            }
+            
+            synchronized (this) {
+                if (block == current) {
+                    block = allocateBlock();
+                }
+            }
+        }
+    }
+    
+    // Reserves the next range in the database, so other processes never receive the same values
+    private Block allocateBlock() throws SQLException {
+        try {
+            dbManager.beginTransaction();
+            String reserveSql = "UPDATE sequences SET next_value = next_value + ? WHERE name = ?";
+            if (dbManager.executeUpdate(reserveSql, blockSize, name) == 0) {
+                seed();
+                dbManager.executeUpdate(reserveSql, blockSize, name);
+            }
+            
+            long end;
+            try (ResultSet rs = dbManager.executeQuery("SELECT next_value FROM sequences WHERE name = ?", name)) {
+                if (!rs.next()) {
+                    throw new SQLException("Sequence " + name + " could not be initialized");
+                }
+                end = rs.getLong("next_value");
+            }
+            dbManager.commit();
+            return new Block(end - blockSize, end);
+        
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            throw e;
+        }
+    }
+    
+    private void seed() throws SQLException {
+        long highest = 0;
+        if (seedSql != null) {
+            try (ResultSet rs = dbManager.executeQuery(seedSql)) {
+                if (rs.next()) {
+                    highest = rs.getLong(1);
+                }
+            }
+        }
+        dbManager.executeUpdate("INSERT OR IGNORE INTO sequences (name, next_value) VALUES (?, ?)", name, highest + 1);
+        System.out.println("🔢 Sequence " + name + " seeded at " + (highest + 1));
+    }
+}
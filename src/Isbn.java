@@ -0,0 +1,63 @@
+public final class Isbn {
+    public static final long NO_KEY = -1;
+    
+    private Isbn() {
+    }
+    
+    // Canonical ISBN-13 as a number; ISBN-10 input is converted, anything failing its checksum gives NO_KEY
+    public static long toKey(String isbn) {
+        if (isbn == null) return NO_KEY;
+        
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if ((c == 'X' || c == 'x') && digits.length() == 9) {
+                digits.append('X');
+            } else if (c != '-' && c != ' ') {
+                return NO_KEY;
+            }
+        }
+        
+        if (digits.length() == 10) {
+            if (!isValidIsbn10(digits)) return NO_KEY;
+            String isbn13 = "978" + digits.substring(0, 9);
+            return Long.parseLong(isbn13 + isbn13CheckDigit(isbn13));
+        }
+        if (digits.length() == 13 && digits.indexOf("X") < 0) {
+            String isbn13 = digits.toString();
+            if (isbn13CheckDigit(isbn13.substring(0, 12)) != isbn13.charAt(12) - '0') return NO_KEY;
+            return Long.parseLong(isbn13);
+        }
+        return NO_KEY;
+    }
+    
+    public static boolean isValid(String isbn) {
+        return toKey(isbn) != NO_KEY;
+    }
+    
+    // Hyphen-free ISBN-13 text of a key, e.g. for display in search results
+    public static String format(long key) {
+        return key == NO_KEY ? "" : String.format("%013d", key);
+    }
+    
+    private static boolean isValidIsbn10(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = digits.charAt(i);
+            int value = (c == 'X') ? 10 : c - '0';
+            sum += value * (10 - i);
+        }
+        return sum % 11 == 0;
+    }
+    
+    private static int isbn13CheckDigit(String firstTwelve) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int value = firstTwelve.charAt(i) - '0';
+            sum += (i % 2 == 0) ? value : value * 3;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+public class JsonWriter implements Closeable, Flushable {
+    private static final int MAX_DEPTH = 64;
+    
+    private final Writer out;
+    // Per nesting level: whether the next value needs a leading comma
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+    
+    // Values go straight to the stream, so a large list is never held as one string
+    public JsonWriter(OutputStream stream) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 8192);
+    }
+    
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+    
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+    
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+    
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+    
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+    
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        separate();
+        writeString(value);
+        return this;
+    }
+    
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+    
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+    
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+    
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+    
+    private JsonWriter open(char bracket) throws IOException {
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        separate();
+        out.write(bracket);
+        needsComma[++depth] = false;
+        return this;
+    }
+    
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("No open JSON container to close");
+        }
+        depth--;
+        out.write(bracket);
+        return this;
+    }
+    
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needsComma[depth]) {
+            out.write(',');
+        }
+        needsComma[depth] = true;
+    }
+    
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
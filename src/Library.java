@@ -2,12 +2,17 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class Library {
-    private HashMap<String, Book> books;
+    private HashMap<Long, Book> books;
     private HashMap<String, User> users;
     private HashMap<String, BorrowTransaction> transactions;
     private int transactionCounter;
     private String libraryName;
     private String address;
+    private AutocompleteIndex titleSuggestions;
+    private AutocompleteIndex authorSuggestions;
+    private AutocompleteIndex userNameSuggestions;
+    private TrigramIndex fuzzyBookIndex;
+    private OverdueScheduler overdueScheduler;
     
     public Library(String libraryName, String address) {
         this.libraryName = (libraryName != null) ? libraryName : "Community Library";
@@ -16,6 +21,11 @@ public class Library {
         this.users = new HashMap<>();
         this.transactions = new HashMap<>();
         this.transactionCounter = 1;
+        this.titleSuggestions = new AutocompleteIndex();
+        this.authorSuggestions = new AutocompleteIndex();
+        this.userNameSuggestions = new AutocompleteIndex();
+        this.fuzzyBookIndex = new TrigramIndex();
+        this.overdueScheduler = new OverdueScheduler();
     }
     
     public Library() {
@@ -32,37 +42,50 @@ public class Library {
     
     public boolean addBook(Book book) {
         if (book == null) return false;
-        if (books.containsKey(book.getIsbn())) {
+        if (book.getIsbnKey() == Isbn.NO_KEY) {
+            System.err.println("❌ Invalid ISBN: " + book.getIsbn());
             return false;
         }
-        books.put(book.getIsbn(), book);
+        if (books.containsKey(book.getIsbnKey())) {
+            return false;
+        }
+        books.put(book.getIsbnKey(), book);
+        titleSuggestions.put(book.getIsbn(), book.getTitle(), 0);
+        authorSuggestions.put(book.getIsbn(), book.getAuthor(), 0);
+        fuzzyBookIndex.put(book.getIsbn(), book.getTitle() + " " + book.getAuthor());
         return true;
     }
     
     public boolean removeBook(String isbn) {
-        Book book = books.get(isbn);
+        Book book = books.get(Isbn.toKey(isbn));
         if (book == null) return false;
         
         if (book.getStatus() == Book.BookStatus.BORROWED) {
             return false;
         }
         
-        books.remove(isbn);
+        books.remove(book.getIsbnKey());
+        titleSuggestions.remove(book.getIsbn());
+        authorSuggestions.remove(book.getIsbn());
+        fuzzyBookIndex.remove(book.getIsbn());
         return true;
     }
     
     public boolean updateBook(String isbn, String title, String author, String genre) {
-        Book book = books.get(isbn);
+        Book book = books.get(Isbn.toKey(isbn));
         if (book == null) return false;
         
         book.setTitle(title);
         book.setAuthor(author);
         book.setGenre(genre);
+        titleSuggestions.rename(book.getIsbn(), book.getTitle());
+        authorSuggestions.rename(book.getIsbn(), book.getAuthor());
+        fuzzyBookIndex.put(book.getIsbn(), book.getTitle() + " " + book.getAuthor());
         return true;
     }
     
     public Book getBook(String isbn) {
-        return books.get(isbn);
+        return books.get(Isbn.toKey(isbn));
     }
     
     public List<Book> searchBooksByTitle(String title) {
@@ -77,6 +100,14 @@ public class Library {
                 .collect(Collectors.toList());
     }
     
+    // Typo-tolerant match over titles and authors, closest first
+    public List<Book> fuzzySearchBooks(String searchTerm, int limit) {
+        return fuzzyBookIndex.search(searchTerm, limit).stream()
+                .map(isbn -> books.get(Isbn.toKey(isbn)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
     public List<Book> searchBooksByGenre(String genre) {
         return books.values().stream()
                 .filter(book -> book.getGenre().toLowerCase().contains(genre.toLowerCase()))
@@ -84,8 +115,17 @@ public class Library {
     }
     
     public List<Book> searchBooksByIsbn(String isbn) {
+        long key = Isbn.toKey(isbn);
+        if (key != Isbn.NO_KEY) {
+            Book book = books.get(key);
+            return book != null ? new ArrayList<>(List.of(book)) : new ArrayList<>();
+        }
+        
+        // Partial input can't form a key, so match its digits against the canonical ISBN-13
+        String digits = isbn.replaceAll("[^0-9]", "");
+        if (digits.isEmpty()) return new ArrayList<>();
         return books.values().stream()
-                .filter(book -> book.getIsbn().toLowerCase().contains(isbn.toLowerCase()))
+                .filter(book -> Isbn.format(book.getIsbnKey()).contains(digits))
                 .collect(Collectors.toList());
     }
     
@@ -105,6 +145,7 @@ public class Library {
             return false;
         }
         users.put(user.getUserId(), user);
+        userNameSuggestions.put(user.getUserId(), user.getName(), 0);
         return true;
     }
     
@@ -128,8 +169,20 @@ public class Library {
         return new ArrayList<>(users.values());
     }
     
+    public List<String> suggestTitles(String prefix, int limit) {
+        return titleSuggestions.suggest(prefix, limit);
+    }
+    
+    public List<String> suggestAuthors(String prefix, int limit) {
+        return authorSuggestions.suggest(prefix, limit);
+    }
+    
+    public List<String> suggestUserNames(String prefix, int limit) {
+        return userNameSuggestions.suggest(prefix, limit);
+    }
+    
     public String borrowBook(String isbn, String userId) {
-        Book book = books.get(isbn);
+        Book book = books.get(Isbn.toKey(isbn));
         User user = users.get(userId);
         
         if (book == null) return "Book not found";
@@ -138,26 +191,30 @@ public class Library {
         if (!user.canBorrowMoreBooks()) return "User has reached maximum book limit";
         
         String transactionId = "T" + String.format("%06d", transactionCounter++);
-        BorrowTransaction transaction = new BorrowTransaction(transactionId, isbn, userId);
+        BorrowTransaction transaction = new BorrowTransaction(transactionId, book.getIsbn(), userId);
         
         book.setStatus(Book.BookStatus.BORROWED);
-        user.borrowBook(isbn);
+        user.borrowBook(book.getIsbn());
         transactions.put(transactionId, transaction);
+        overdueScheduler.schedule(transaction);
+        titleSuggestions.addPopularity(book.getIsbn(), 1);
+        authorSuggestions.addPopularity(book.getIsbn(), 1);
+        userNameSuggestions.addPopularity(userId, 1);
         
         return "Book borrowed successfully. Transaction ID: " + transactionId;
     }
     
     public String returnBook(String isbn, String userId) {
-        Book book = books.get(isbn);
+        Book book = books.get(Isbn.toKey(isbn));
         User user = users.get(userId);
         
         if (book == null) return "Book not found";
         if (user == null) return "User not found";
         if (book.isAvailable()) return "Book is not currently borrowed";
-        if (!user.getBorrowedBooks().contains(isbn)) return "User has not borrowed this book";
+        if (!user.getBorrowedBooks().contains(book.getIsbn())) return "User has not borrowed this book";
         
         BorrowTransaction transaction = transactions.values().stream()
-                .filter(t -> t.getBookIsbn().equals(isbn) && 
+                .filter(t -> t.getBookIsbn().equals(book.getIsbn()) && 
                            t.getUserId().equals(userId) && 
                            !t.isReturned())
                 .findFirst()
@@ -166,12 +223,37 @@ public class Library {
         if (transaction == null) return "No active transaction found";
         
         book.setStatus(Book.BookStatus.AVAILABLE);
-        user.returnBook(isbn);
+        user.returnBook(book.getIsbn());
         transaction.markAsReturned();
+        overdueScheduler.cancel(transaction.getTransactionId());
         
         return "Book returned successfully";
     }
     
+    // Restored loans skip the overdue schedule, which is rebuilt once here instead of reordered per event
+    public void rebuildOverdueSchedule() {
+        overdueScheduler.rebuild(transactions.values().stream()
+                .filter(t -> !t.isReturned())
+                .map(t -> new TransactionSummary(t.getTransactionId(), t.getBookIsbn(), t.getUserId(), t.getDueTime(), false))
+                .collect(Collectors.toList()));
+    }
+    
+    // The number in a "T000123" style id, or -1; replay calls this per event, so no regex
+    private static int transactionNumber(String transactionId) {
+        if (transactionId.length() < 2 || transactionId.length() > 10 || transactionId.charAt(0) != 'T') return -1;
+        int number = 0;
+        for (int i = 1; i < transactionId.length(); i++) {
+            char c = transactionId.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+    
+    public BorrowTransaction getTransaction(String transactionId) {
+        return transactions.get(transactionId);
+    }
+    
     public List<BorrowTransaction> getAllTransactions() {
         return new ArrayList<>(transactions.values());
     }
@@ -182,12 +264,65 @@ public class Library {
                 .collect(Collectors.toList());
     }
     
+    // Served from the scheduler's due-time order instead of scanning every transaction
     public List<BorrowTransaction> getOverdueTransactions() {
-        return transactions.values().stream()
-                .filter(t -> !t.isReturned() && t.isOverdue())
+        return overdueScheduler.getOverdue().stream()
+                .map(loan -> transactions.get(loan.transactionId()))
                 .collect(Collectors.toList());
     }
     
+    public OverdueScheduler getOverdueScheduler() {
+        return overdueScheduler;
+    }
+    
+    // Replay path: the change already passed the rules where it was made, so these upsert without checking them
+    public void restoreBook(Book book) {
+        if (book.getIsbnKey() == Isbn.NO_KEY) return;
+        books.put(book.getIsbnKey(), book);
+        titleSuggestions.put(book.getIsbn(), book.getTitle(), 0);
+        authorSuggestions.put(book.getIsbn(), book.getAuthor(), 0);
+        fuzzyBookIndex.put(book.getIsbn(), book.getTitle() + " " + book.getAuthor());
+    }
+    
+    public void restoreUser(User user) {
+        User existing = users.get(user.getUserId());
+        if (existing != null) {
+            user.restoreBorrowedBooks(existing.getBorrowedBooks());
+        }
+        users.put(user.getUserId(), user);
+        userNameSuggestions.put(user.getUserId(), user.getName(), 0);
+    }
+    
+    public void restoreTransaction(BorrowTransaction transaction) {
+        transactions.put(transaction.getTransactionId(), transaction);
+        Book book = books.get(Isbn.toKey(transaction.getBookIsbn()));
+        User user = users.get(transaction.getUserId());
+        
+        if (transaction.isReturned()) {
+            if (book != null && book.getStatus() == Book.BookStatus.BORROWED) {
+                book.setStatus(Book.BookStatus.AVAILABLE);
+            }
+            if (user != null) {
+                user.returnBook(transaction.getBookIsbn());
+            }
+        } else {
+            if (book != null) {
+                book.setStatus(Book.BookStatus.BORROWED);
+            }
+            if (user != null && !user.hasBorrowedBook(transaction.getBookIsbn())) {
+                List<String> borrowed = user.getBorrowedBooks();
+                borrowed.add(transaction.getBookIsbn());
+                user.restoreBorrowedBooks(borrowed);
+            }
+        }
+        
+        // Keeps ids handed out by borrowBook clear of the restored ones
+        int number = transactionNumber(transaction.getTransactionId());
+        if (number >= transactionCounter) {
+            transactionCounter = number + 1;
+        }
+    }
+    
     public Map<String, Integer> getLibraryStatistics() {
         Map<String, Integer> stats = new HashMap<>();
         stats.put("Total Books", books.size());
@@ -215,9 +350,10 @@ public class Library {
         genreCount.forEach((genre, count) -> 
             System.out.printf("%-15s: %d books%n", genre, count));
         
-        if (!getOverdueTransactions().isEmpty()) {
+        List<BorrowTransaction> overdueTransactions = getOverdueTransactions();
+        if (!overdueTransactions.isEmpty()) {
             System.out.println("\n⚠️  Overdue Items:");
-            getOverdueTransactions().forEach(t -> 
+            overdueTransactions.forEach(t -> 
                 System.out.println("  " + t.getFormattedInfo()));
         }
         
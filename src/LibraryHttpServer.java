@@ -0,0 +1,286 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class LibraryHttpServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    
+    // A handler writes its body through the streaming writer; the status is sent before the first byte
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonWriter json) throws IOException;
+    }
+    
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        private final int status;
+        
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+    
+    private final AsyncDatabaseLibrary library;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    public LibraryHttpServer(DatabaseLibrary library, int port) throws IOException {
+        this(new AsyncDatabaseLibrary(library), port);
+    }
+    
+    public LibraryHttpServer(AsyncDatabaseLibrary library, int port) throws IOException {
+        // The JDK server flushes headers and body separately; without TCP_NODELAY each response waits on a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.library = library;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        // One virtual thread per exchange; the database side is still bounded by the async facade's permits
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        
+        server.createContext("/books", exchange -> handle(exchange, "GET", this::books));
+        server.createContext("/users", exchange -> handle(exchange, "GET", this::users));
+        server.createContext("/loans", exchange -> handle(exchange, "POST", this::borrow));
+        server.createContext("/returns", exchange -> handle(exchange, "POST", this::returnBook));
+        server.createContext("/transactions", exchange -> handle(exchange, "GET", this::transactions));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", this::statistics));
+    }
+    
+    public void start() {
+        server.start();
+        System.out.println("🌐 Library API listening on port " + server.getAddress().getPort());
+    }
+    
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        library.close();
+        System.out.println("🌐 Library API stopped");
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    @FunctionalInterface
+    private interface Route {
+        void handle(HttpExchange exchange, Map<String, String> query) throws Exception;
+    }
+    
+    // Closing the exchange after every response, including errors, is what lets HTTP/1.1 keep the connection alive
+    private void handle(HttpExchange exchange, String method, Route route) {
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            route.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException || cause instanceof CancellationException) {
+                sendError(exchange, 503, "Request timed out");
+            } else {
+                sendInternalError(exchange, cause);
+            }
+        } catch (IOException e) {
+            // The client went away mid-response; nothing left to tell it
+            System.err.println("⚠️ HTTP response aborted: " + e.getMessage());
+        } catch (Exception e) {
+            sendInternalError(exchange, e);
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    // GET /books?q=term[&fuzzy=true][&offset=0&limit=100] or GET /books/{isbn}
+    private void books(HttpExchange exchange, Map<String, String> query) throws Exception {
+        String isbn = pathTail(exchange, "/books");
+        if (isbn != null) {
+            Book book = library.getBook(isbn).get();
+            if (book == null) throw new ApiException(404, "Book not found");
+            send(exchange, 200, json -> writeBook(json, book));
+            return;
+        }
+        
+        String term = query.getOrDefault("q", "");
+        List<Book> books = Boolean.parseBoolean(query.get("fuzzy"))
+                ? library.fuzzySearchBooks(term, pageSize(query)).get()
+                : library.searchBooks(term, intParam(query, "offset", 0), pageSize(query)).get();
+        send(exchange, 200, json -> {
+            json.beginArray();
+            for (Book book : books) {
+                writeBook(json, book);
+            }
+            json.endArray();
+        });
+    }
+    
+    // GET /users/{id}
+    private void users(HttpExchange exchange, Map<String, String> query) throws Exception {
+        String userId = pathTail(exchange, "/users");
+        if (userId == null) throw new ApiException(400, "User ID is required");
+        
+        User user = library.getUser(userId).get();
+        if (user == null) throw new ApiException(404, "User not found");
+        send(exchange, 200, json -> json.beginObject()
+                .name("userId").value(user.getUserId())
+                .name("name").value(user.getName())
+                .name("email").value(user.getEmail())
+                .name("active").value(user.isActive())
+                .name("borrowedBooks").value(user.getBorrowedBooksCount())
+                .name("remainingLimit").value(user.getRemainingBorrowLimit())
+                .endObject());
+    }
+    
+    // POST /loans?isbn=...&userId=...
+    private void borrow(HttpExchange exchange, Map<String, String> query) throws Exception {
+        String message = library.borrowBook(required(query, "isbn"), required(query, "userId")).get();
+        sendOutcome(exchange, message.startsWith("Book borrowed successfully"), message);
+    }
+    
+    // POST /returns?isbn=...&userId=...
+    private void returnBook(HttpExchange exchange, Map<String, String> query) throws Exception {
+        String message = library.returnBook(required(query, "isbn"), required(query, "userId")).get();
+        sendOutcome(exchange, message.startsWith("Book returned successfully"), message);
+    }
+    
+    // GET /transactions?status=ACTIVE&offset=0&limit=100
+    private void transactions(HttpExchange exchange, Map<String, String> query) throws Exception {
+        TransactionDAO.StatusFilter filter;
+        try {
+            filter = TransactionDAO.StatusFilter.valueOf(query.getOrDefault("status", "ALL").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Unknown status filter");
+        }
+        
+        List<TransactionDetails> details = library.getTransactionDetails(filter, intParam(query, "offset", 0), pageSize(query)).get();
+        send(exchange, 200, json -> {
+            json.beginArray();
+            for (TransactionDetails detail : details) {
+                BorrowTransaction transaction = detail.transaction();
+                json.beginObject()
+                        .name("transactionId").value(transaction.getTransactionId())
+                        .name("isbn").value(transaction.getBookIsbn())
+                        .name("title").value(detail.bookTitle())
+                        .name("userId").value(transaction.getUserId())
+                        .name("userName").value(detail.userName())
+                        .name("borrowTime").value(transaction.getBorrowTime())
+                        .name("dueTime").value(transaction.getDueTime())
+                        .name("returned").value(transaction.isReturned())
+                        .name("fine").value(transaction.getFineAmount())
+                        .endObject();
+            }
+            json.endArray();
+        });
+    }
+    
+    // GET /stats
+    private void statistics(HttpExchange exchange, Map<String, String> query) throws Exception {
+        Map<String, Integer> stats = new TreeMap<>(library.getLibraryStatistics().get());
+        send(exchange, 200, json -> {
+            json.beginObject();
+            for (Map.Entry<String, Integer> entry : stats.entrySet()) {
+                json.name(entry.getKey()).value(entry.getValue());
+            }
+            json.endObject();
+        });
+    }
+    
+    private static void writeBook(JsonWriter json, Book book) throws IOException {
+        json.beginObject()
+                .name("isbn").value(book.getIsbn())
+                .name("title").value(book.getTitle())
+                .name("author").value(book.getAuthor())
+                .name("genre").value(book.getGenre())
+                .name("year").value(book.getPublicationYear())
+                .name("status").value(book.getStatus().toString())
+                .endObject();
+    }
+    
+    private static void sendOutcome(HttpExchange exchange, boolean success, String message) throws IOException {
+        send(exchange, success ? 200 : 409, json -> json.beginObject()
+                .name("success").value(success)
+                .name("message").value(message)
+                .endObject());
+    }
+    
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, status, json -> json.beginObject().name("error").value(message).endObject());
+        } catch (IOException e) {
+            System.err.println("⚠️ HTTP error response aborted: " + e.getMessage());
+        }
+    }
+    
+    // Details stay in the server log; clients only learn that the request failed
+    private static void sendInternalError(HttpExchange exchange, Throwable cause) {
+        System.err.println("❌ " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " failed: " + cause);
+        sendError(exchange, 500, "Internal server error");
+    }
+    
+    // Chunked encoding lets the body stream without knowing its length, and keeps the connection reusable
+    private static void send(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        try (JsonWriter json = new JsonWriter(exchange.getResponseBody())) {
+            body.write(json);
+        }
+    }
+    
+    private static String pathTail(HttpExchange exchange, String context) {
+        String path = exchange.getRequestURI().getPath();
+        if (path.length() <= context.length() + 1) return null;
+        return URLDecoder.decode(path.substring(context.length() + 1), StandardCharsets.UTF_8);
+    }
+    
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+        
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+    
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isBlank()) {
+            throw new ApiException(400, "Missing parameter: " + name);
+        }
+        return value;
+    }
+    
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Parameter " + name + " must be a number");
+        }
+    }
+    
+    private static int pageSize(Map<String, String> query) {
+        return Math.max(1, Math.min(MAX_PAGE_SIZE, intParam(query, "limit", DEFAULT_PAGE_SIZE)));
+    }
+}
@@ -1,10 +1,13 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public class LibraryManagementGUI extends JFrame {
     private Library library;
@@ -20,6 +23,9 @@ public class LibraryManagementGUI extends JFrame {
     private int nextBookId = 1;
     private int nextUserId = 1;
     
+    private static final int SUGGESTION_LIMIT = 8;
+    private static final int FUZZY_RESULT_LIMIT = 20;
+    
     public LibraryManagementGUI() {
         library = new Library("Java Learning Library", "Tutorial Campus");
         initializeGUI();
@@ -315,7 +321,9 @@ public class LibraryManagementGUI extends JFrame {
                 int year = yearField.getText().trim().isEmpty() ? 0 : Integer.parseInt(yearField.getText());
                 Book book = new Book(isbnField.getText(), titleField.getText(), 
                                    authorField.getText(), genreField.getText(), year);
-                if (library.addBook(book)) {
+                if (book.getIsbnKey() == Isbn.NO_KEY) {
+                    JOptionPane.showMessageDialog(this, "Invalid ISBN - please check the digits!");
+                } else if (library.addBook(book)) {
                     refreshBookTable();
                     dialog.dispose();
                     JOptionPane.showMessageDialog(this, "Book added successfully!");
@@ -612,26 +620,88 @@ public class LibraryManagementGUI extends JFrame {
     }
     
     private void showSearchBooksDialog() {
-        String[] searchTypes = {"Title", "Author", "Genre", "ISBN"};
+        String[] searchTypes = {"Title", "Author", "Genre", "ISBN", "Fuzzy"};
         String searchType = (String) JOptionPane.showInputDialog(this, "Search by:",
                 "Search Books", JOptionPane.QUESTION_MESSAGE, null, searchTypes, searchTypes[0]);
         
         if (searchType != null) {
-            String searchTerm = JOptionPane.showInputDialog(this, "Enter search term:");
+            String searchTerm = switch (searchType) {
+                case "Title" -> showSuggestingInputDialog("Enter search term:",
+                        prefix -> library.suggestTitles(prefix, SUGGESTION_LIMIT));
+                case "Author" -> showSuggestingInputDialog("Enter search term:",
+                        prefix -> library.suggestAuthors(prefix, SUGGESTION_LIMIT));
+                default -> JOptionPane.showInputDialog(this, "Enter search term:");
+            };
             if (searchTerm != null && !searchTerm.trim().isEmpty()) {
                 List<Book> results = switch (searchType) {
                     case "Title" -> library.searchBooksByTitle(searchTerm);
                     case "Author" -> library.searchBooksByAuthor(searchTerm);
                     case "Genre" -> library.searchBooksByGenre(searchTerm);
                     case "ISBN" -> library.searchBooksByIsbn(searchTerm);
+                    case "Fuzzy" -> library.fuzzySearchBooks(searchTerm, FUZZY_RESULT_LIMIT);
                     default -> List.of();
                 };
                 
+                // Fall back to the typo-tolerant search instead of showing an empty result
+                if (results.isEmpty() && (searchType.equals("Title") || searchType.equals("Author"))) {
+                    results = library.fuzzySearchBooks(searchTerm, FUZZY_RESULT_LIMIT);
+                    searchType = "Fuzzy";
+                }
+                
                 showSearchResults(results, searchType, searchTerm);
             }
         }
     }
     
+    private String showSuggestingInputDialog(String message, Function<String, List<String>> suggester) {
+        JTextField inputField = new JTextField(25);
+        DefaultListModel<String> suggestionModel = new DefaultListModel<>();
+        JList<String> suggestionList = new JList<>(suggestionModel);
+        suggestionList.setVisibleRowCount(SUGGESTION_LIMIT);
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        
+        // Refresh suggestions on every keystroke
+        inputField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refreshSuggestions();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refreshSuggestions();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                refreshSuggestions();
+            }
+            
+            private void refreshSuggestions() {
+                suggestionModel.clear();
+                suggester.apply(inputField.getText()).forEach(suggestionModel::addElement);
+            }
+        });
+        
+        suggestionList.addListSelectionListener(e -> {
+            String selected = suggestionList.getSelectedValue();
+            if (!e.getValueIsAdjusting() && selected != null) {
+                SwingUtilities.invokeLater(() -> inputField.setText(selected));
+            }
+        });
+        
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        JPanel inputPanel = new JPanel(new BorderLayout(5, 5));
+        inputPanel.add(new JLabel(message), BorderLayout.NORTH);
+        inputPanel.add(inputField, BorderLayout.CENTER);
+        panel.add(inputPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(suggestionList), BorderLayout.CENTER);
+        
+        int option = JOptionPane.showConfirmDialog(this, panel, "Search Books",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+        return option == JOptionPane.OK_OPTION ? inputField.getText() : null;
+    }
+    
     private void showSearchResults(List<Book> results, String searchType, String searchTerm) {
         JDialog dialog = new JDialog(this, "Search Results", true);
         dialog.setSize(600, 400);
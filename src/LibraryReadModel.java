@@ -0,0 +1,854 @@
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Committed books, users and open loans held in memory for DatabaseLibrary's queries; SQLite stays the system of record.
+// Returned loans are history: the model only keeps their totals and leaves listing them to the database.
+// In write-behind mode the model runs ahead of it by the borrows and returns still queued.
+// Rows are copied on the way in and out, so nothing a caller holds can change the model, and each ordered
+// index matches the ORDER BY of the query it replaces.
+public class LibraryReadModel {
+    private static final Comparator<Book> BY_TITLE =
+            Comparator.comparing(Book::getTitle).thenComparing(Book::getIsbn);
+    private static final Comparator<User> BY_NAME =
+            Comparator.comparing(User::getName).thenComparing(User::getUserId);
+    private static final Comparator<BorrowTransaction> BY_BORROW_TIME_DESC =
+            Comparator.comparingLong(BorrowTransaction::getBorrowTime).reversed()
+                    .thenComparing(BorrowTransaction::getTransactionId);
+    private static final Comparator<BorrowTransaction> BY_DUE_TIME =
+            Comparator.comparingLong(BorrowTransaction::getDueTime)
+                    .thenComparing(BorrowTransaction::getTransactionId);
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Books by ISBN as stored, plus the canonical key so any spelling finds them
+    private final Map<String, Book> booksByIsbn = new HashMap<>();
+    private final Map<Long, String> isbnsByKey = new HashMap<>();
+    private final NavigableSet<Book> booksByTitle = new TreeSet<>(BY_TITLE);
+    private final Map<Book.BookStatus, NavigableSet<Book>> booksByStatus = new EnumMap<>(Book.BookStatus.class);
+    // Keyed by lower-cased value; a LIKE search visits the distinct values, not every book
+    private final Map<String, NavigableSet<Book>> booksByGenre = new HashMap<>();
+    private final Map<String, NavigableSet<Book>> booksByAuthor = new HashMap<>();
+    // Statistics group by the genre exactly as stored
+    private final Map<String, Integer> genreCounts = new HashMap<>();
+    
+    private final Map<String, User> usersById = new HashMap<>();
+    private final Map<String, String> userIdsByEmail = new HashMap<>();
+    private final NavigableSet<User> usersByName = new TreeSet<>(BY_NAME);
+    private final NavigableSet<User> activeUsersByName = new TreeSet<>(BY_NAME);
+    private int usersWithBooks;
+    
+    private final Map<String, BorrowTransaction> transactionsById = new HashMap<>();
+    private final NavigableSet<BorrowTransaction> transactionsByBorrowTime = new TreeSet<>(BY_BORROW_TIME_DESC);
+    private final NavigableSet<BorrowTransaction> activeByDueTime = new TreeSet<>(BY_DUE_TIME);
+    private final Map<String, NavigableSet<BorrowTransaction>> transactionsByBook = new HashMap<>();
+    private int transactionsWithFines;
+    private double totalFines;
+    private double outstandingFines;
+    private int returnedTransactions;
+    private int returnedWithFines;
+    private double returnedFines;
+    
+    // Write-behind changes per row not yet in the database; refreshes from the database leave these rows alone
+    private final Map<String, Integer> unpersistedBooks = new HashMap<>();
+    private final Map<String, Integer> unpersistedUsers = new HashMap<>();
+    private final Map<String, Integer> unpersistedTransactions = new HashMap<>();
+    
+    public void load(Collection<Book> books, Collection<User> users, Collection<BorrowTransaction> openTransactions,
+                     TransactionDAO.ReturnedTotals returned) {
+        lock.writeLock().lock();
+        try {
+            List<Book> keptBooks = keptRows(unpersistedBooks, booksByIsbn);
+            List<User> keptUsers = keptRows(unpersistedUsers, usersById);
+            List<BorrowTransaction> keptTransactions = keptRows(unpersistedTransactions, transactionsById);
+            booksByIsbn.clear();
+            isbnsByKey.clear();
+            booksByTitle.clear();
+            booksByStatus.clear();
+            booksByGenre.clear();
+            booksByAuthor.clear();
+            genreCounts.clear();
+            usersById.clear();
+            userIdsByEmail.clear();
+            usersByName.clear();
+            activeUsersByName.clear();
+            usersWithBooks = 0;
+            transactionsById.clear();
+            transactionsByBorrowTime.clear();
+            activeByDueTime.clear();
+            transactionsByBook.clear();
+            transactionsWithFines = 0;
+            totalFines = 0;
+            outstandingFines = 0;
+            returnedTransactions = returned.count();
+            returnedWithFines = returned.withFines();
+            returnedFines = returned.fines();
+            
+            books.forEach(book -> putBookLocked(copyOf(book)));
+            users.forEach(user -> putUserLocked(copyOf(user)));
+            openTransactions.forEach(transaction -> putTransactionLocked(copyOf(transaction)));
+            keptBooks.forEach(this::storeBookLocked);
+            keptUsers.forEach(this::storeUserLocked);
+            keptTransactions.forEach(this::storeTransactionLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private static <T> List<T> keptRows(Map<String, Integer> unpersisted, Map<String, T> rows) {
+        List<T> kept = new ArrayList<>();
+        for (String key : unpersisted.keySet()) {
+            T row = rows.get(key);
+            if (row != null) {
+                kept.add(row);
+            }
+        }
+        return kept;
+    }
+    
+    // Writes: callers pass rows just read back from the database after their change committed.
+    // A row older than the one held is ignored, so a bulk refresh cannot undo a newer single-row one.
+    public void putBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            putBookLocked(copyOf(book));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void putBooks(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            books.forEach(book -> putBookLocked(copyOf(book)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void removeBook(String isbn) {
+        lock.writeLock().lock();
+        try {
+            Book book = findBookLocked(isbn);
+            if (book != null) {
+                unindexBook(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void putUser(User user) {
+        lock.writeLock().lock();
+        try {
+            putUserLocked(copyOf(user));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void putUsers(Collection<User> users) {
+        lock.writeLock().lock();
+        try {
+            users.forEach(user -> putUserLocked(copyOf(user)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void putTransaction(BorrowTransaction transaction) {
+        lock.writeLock().lock();
+        try {
+            putTransactionLocked(copyOf(transaction));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void putTransactions(Collection<BorrowTransaction> transactions) {
+        lock.writeLock().lock();
+        try {
+            transactions.forEach(transaction -> putTransactionLocked(copyOf(transaction)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Write-behind: a borrow or return applied ahead of the database. Its book, user and loan count as unpersisted
+    // until markPersisted reports the batch that wrote them. The book and user take the versions the caller gives,
+    // which the batch writes to the database too, so a row read now can still be saved after the flush.
+    public void applyCirculation(BorrowTransaction transaction, long bookVersion, long userVersion) {
+        lock.writeLock().lock();
+        try {
+            boolean returned = transaction.isReturned();
+            Book book = booksByIsbn.get(transaction.getBookIsbn());
+            if (book != null) {
+                Book changed = copyOf(book);
+                changed.setStatus(returned ? Book.BookStatus.AVAILABLE : Book.BookStatus.BORROWED);
+                changed.setVersion(Math.max(bookVersion, book.getVersion()));
+                storeBookLocked(changed);
+            }
+            User user = usersById.get(transaction.getUserId());
+            if (user != null) {
+                List<String> borrowed = new ArrayList<>(user.getBorrowedBooks());
+                if (returned) {
+                    borrowed.remove(transaction.getBookIsbn());
+                } else {
+                    borrowed.add(transaction.getBookIsbn());
+                }
+                User changed = copyOf(user);
+                changed.restoreBorrowedBooks(borrowed);
+                changed.setVersion(Math.max(userVersion, user.getVersion()));
+                storeUserLocked(changed);
+            }
+            // Counted before the loan is stored, so a return is held until its batch is written
+            unpersistedBooks.merge(transaction.getBookIsbn(), 1, Integer::sum);
+            unpersistedUsers.merge(transaction.getUserId(), 1, Integer::sum);
+            unpersistedTransactions.merge(transaction.getTransactionId(), 1, Integer::sum);
+            
+            BorrowTransaction existing = transactionsById.get(transaction.getTransactionId());
+            BorrowTransaction changed = copyOf(transaction);
+            changed.setVersion((existing != null) ? existing.getVersion() : transaction.getVersion());
+            storeTransactionLocked(changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Write-behind: the applied changes are in the database now. Rows read back after that commit bring versions
+    // up to date; a row with nothing else pending is replaced outright.
+    public void markPersisted(Collection<BorrowTransaction> applied, Collection<Book> books, Collection<User> users,
+                              Collection<BorrowTransaction> transactions) {
+        lock.writeLock().lock();
+        try {
+            for (BorrowTransaction transaction : applied) {
+                unpersistedBooks.computeIfPresent(transaction.getBookIsbn(), LibraryReadModel::countDown);
+                unpersistedUsers.computeIfPresent(transaction.getUserId(), LibraryReadModel::countDown);
+                unpersistedTransactions.computeIfPresent(transaction.getTransactionId(), LibraryReadModel::countDown);
+            }
+            for (Book book : books) {
+                Book stored = booksByIsbn.get(book.getIsbn());
+                if (!unpersistedBooks.containsKey(book.getIsbn())) {
+                    putBookLocked(copyOf(book));
+                } else if (stored != null && stored.getVersion() < book.getVersion()) {
+                    stored.setVersion(book.getVersion());
+                }
+            }
+            for (User user : users) {
+                User stored = usersById.get(user.getUserId());
+                if (!unpersistedUsers.containsKey(user.getUserId())) {
+                    putUserLocked(copyOf(user));
+                } else if (stored != null && stored.getVersion() < user.getVersion()) {
+                    stored.setVersion(user.getVersion());
+                }
+            }
+            for (BorrowTransaction transaction : transactions) {
+                BorrowTransaction stored = transactionsById.get(transaction.getTransactionId());
+                if (!unpersistedTransactions.containsKey(transaction.getTransactionId())) {
+                    putTransactionLocked(copyOf(transaction));
+                } else if (stored != null && stored.getVersion() < transaction.getVersion()) {
+                    stored.setVersion(transaction.getVersion());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Write-behind: the applied changes were dead-lettered and will never reach the database. A row with nothing
+    // else pending goes back to its database state, whatever version the model had given it, and a loan whose
+    // borrow was discarded disappears. Rows the database didn't return are otherwise left for a reload to fix.
+    public void discardCirculation(Collection<BorrowTransaction> discarded, Collection<Book> books, Collection<User> users,
+                                   Collection<BorrowTransaction> transactions) {
+        lock.writeLock().lock();
+        try {
+            Map<String, Book> storedBooks = new HashMap<>();
+            books.forEach(book -> storedBooks.put(book.getIsbn(), book));
+            Map<String, User> storedUsers = new HashMap<>();
+            users.forEach(user -> storedUsers.put(user.getUserId(), user));
+            Map<String, BorrowTransaction> storedTransactions = new HashMap<>();
+            transactions.forEach(transaction -> storedTransactions.put(transaction.getTransactionId(), transaction));
+            Set<String> discardedBorrows = new HashSet<>();
+            discarded.forEach(transaction -> {
+                if (!transaction.isReturned()) discardedBorrows.add(transaction.getTransactionId());
+            });
+            
+            for (BorrowTransaction transaction : discarded) {
+                String isbn = transaction.getBookIsbn();
+                Book existingBook = booksByIsbn.get(isbn);
+                if (unpersistedBooks.computeIfPresent(isbn, LibraryReadModel::countDown) == null
+                        && storedBooks.containsKey(isbn)) {
+                    if (existingBook != null) unindexBook(existingBook);
+                    storeBookLocked(copyOf(storedBooks.get(isbn)));
+                }
+                String userId = transaction.getUserId();
+                User existingUser = usersById.get(userId);
+                if (unpersistedUsers.computeIfPresent(userId, LibraryReadModel::countDown) == null
+                        && storedUsers.containsKey(userId)) {
+                    if (existingUser != null) unindexUser(existingUser);
+                    storeUserLocked(copyOf(storedUsers.get(userId)));
+                }
+                String transactionId = transaction.getTransactionId();
+                BorrowTransaction existing = transactionsById.get(transactionId);
+                if (unpersistedTransactions.computeIfPresent(transactionId, LibraryReadModel::countDown) == null
+                        && (storedTransactions.containsKey(transactionId) || discardedBorrows.contains(transactionId))) {
+                    if (existing != null) unindexTransaction(existing);
+                    if (storedTransactions.containsKey(transactionId)) {
+                        storeTransactionLocked(copyOf(storedTransactions.get(transactionId)));
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private static Integer countDown(String key, Integer count) {
+        return (count > 1) ? count - 1 : null;
+    }
+    
+    private void putBookLocked(Book book) {
+        if (!unpersistedBooks.containsKey(book.getIsbn())) {
+            storeBookLocked(book);
+        }
+    }
+    
+    private void storeBookLocked(Book book) {
+        Book existing = booksByIsbn.get(book.getIsbn());
+        if (existing != null) {
+            if (existing.getVersion() > book.getVersion()) return;
+            unindexBook(existing);
+        }
+        booksByIsbn.put(book.getIsbn(), book);
+        if (book.getIsbnKey() != Isbn.NO_KEY) {
+            isbnsByKey.put(book.getIsbnKey(), book.getIsbn());
+        }
+        booksByTitle.add(book);
+        booksByStatus.computeIfAbsent(book.getStatus(), status -> new TreeSet<>(BY_TITLE)).add(book);
+        booksByGenre.computeIfAbsent(lower(book.getGenre()), genre -> new TreeSet<>(BY_TITLE)).add(book);
+        booksByAuthor.computeIfAbsent(lower(book.getAuthor()), author -> new TreeSet<>(BY_TITLE)).add(book);
+        genreCounts.merge(book.getGenre(), 1, Integer::sum);
+    }
+    
+    private void unindexBook(Book book) {
+        booksByIsbn.remove(book.getIsbn());
+        isbnsByKey.remove(book.getIsbnKey());
+        booksByTitle.remove(book);
+        removeFrom(booksByStatus, book.getStatus(), book);
+        removeFrom(booksByGenre, lower(book.getGenre()), book);
+        removeFrom(booksByAuthor, lower(book.getAuthor()), book);
+        genreCounts.computeIfPresent(book.getGenre(), (genre, count) -> (count > 1) ? count - 1 : null);
+    }
+    
+    private void putUserLocked(User user) {
+        if (!unpersistedUsers.containsKey(user.getUserId())) {
+            storeUserLocked(user);
+        }
+    }
+    
+    private void storeUserLocked(User user) {
+        User existing = usersById.get(user.getUserId());
+        if (existing != null) {
+            if (existing.getVersion() > user.getVersion()) return;
+            unindexUser(existing);
+        }
+        usersById.put(user.getUserId(), user);
+        usersByName.add(user);
+        if (user.isActive()) {
+            activeUsersByName.add(user);
+        }
+        userIdsByEmail.put(UserDAO.normalizeEmail(user.getEmail()), user.getUserId());
+        if (user.getBorrowedBooksCount() > 0) usersWithBooks++;
+    }
+    
+    private void unindexUser(User user) {
+        usersById.remove(user.getUserId());
+        usersByName.remove(user);
+        activeUsersByName.remove(user);
+        userIdsByEmail.remove(UserDAO.normalizeEmail(user.getEmail()));
+        if (user.getBorrowedBooksCount() > 0) usersWithBooks--;
+    }
+    
+    private void putTransactionLocked(BorrowTransaction transaction) {
+        if (!unpersistedTransactions.containsKey(transaction.getTransactionId())) {
+            storeTransactionLocked(transaction);
+        }
+    }
+    
+    private void storeTransactionLocked(BorrowTransaction transaction) {
+        BorrowTransaction existing = transactionsById.get(transaction.getTransactionId());
+        if (existing != null) {
+            if (existing.getVersion() > transaction.getVersion()) return;
+            unindexTransaction(existing);
+        }
+        // A returned loan leaves the model once nothing is queued for it; only a loan the model held is counted,
+        // since the load's totals already include the rest
+        if (transaction.isReturned() && !unpersistedTransactions.containsKey(transaction.getTransactionId())) {
+            if (existing != null) {
+                returnedTransactions++;
+                if (transaction.getFineAmount() > 0) returnedWithFines++;
+                returnedFines += transaction.getFineAmount();
+            }
+            return;
+        }
+        transactionsById.put(transaction.getTransactionId(), transaction);
+        transactionsByBorrowTime.add(transaction);
+        if (!transaction.isReturned()) {
+            activeByDueTime.add(transaction);
+        }
+        transactionsByBook.computeIfAbsent(transaction.getBookIsbn(), isbn -> new TreeSet<>(BY_BORROW_TIME_DESC)).add(transaction);
+        countFines(transaction, 1);
+    }
+    
+    private void unindexTransaction(BorrowTransaction transaction) {
+        transactionsById.remove(transaction.getTransactionId());
+        transactionsByBorrowTime.remove(transaction);
+        activeByDueTime.remove(transaction);
+        removeFrom(transactionsByBook, transaction.getBookIsbn(), transaction);
+        countFines(transaction, -1);
+    }
+    
+    private void countFines(BorrowTransaction transaction, int sign) {
+        double fine = transaction.getFineAmount();
+        if (fine > 0) transactionsWithFines += sign;
+        totalFines += sign * fine;
+        if (!transaction.isReturned()) outstandingFines += sign * fine;
+    }
+    
+    private static <K, V> void removeFrom(Map<K, NavigableSet<V>> index, K key, V value) {
+        NavigableSet<V> values = index.get(key);
+        if (values != null && values.remove(value) && values.isEmpty()) {
+            index.remove(key);
+        }
+    }
+    
+    // Reads
+    public Book getBook(String isbn) {
+        lock.readLock().lock();
+        try {
+            Book book = findBookLocked(isbn);
+            return (book != null) ? copyOf(book) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Book> getBooks(Collection<String> isbns) {
+        Map<String, Book> books = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String isbn : isbns) {
+                Book book = findBookLocked(isbn);
+                if (book != null) {
+                    books.put(isbn, copyOf(book));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return books;
+    }
+    
+    private Book findBookLocked(String isbn) {
+        if (isbn == null) return null;
+        long key = Isbn.toKey(isbn);
+        String stored = (key != Isbn.NO_KEY) ? isbnsByKey.get(key) : isbn.trim();
+        return (stored != null) ? booksByIsbn.get(stored) : null;
+    }
+    
+    public List<Book> getAllBooks() {
+        return readBooks(() -> booksByTitle);
+    }
+    
+    public List<Book> getBooksByStatus(Book.BookStatus status) {
+        return readBooks(() -> booksByStatus.getOrDefault(status, Collections.emptyNavigableSet()));
+    }
+    
+    public List<Book> searchBooksByTitle(String title) {
+        String term = lower(title);
+        return readBooks(() -> booksByTitle.stream().filter(book -> lower(book.getTitle()).contains(term)).toList());
+    }
+    
+    public List<Book> searchBooksByAuthor(String author) {
+        return readBooks(() -> matching(booksByAuthor, lower(author)));
+    }
+    
+    public List<Book> searchBooksByGenre(String genre) {
+        return readBooks(() -> matching(booksByGenre, lower(genre)));
+    }
+    
+    // Same matches and order as BookDAO.searchBooks: title, then author, then genre prefix matches first
+    public List<Book> searchBooks(String searchTerm) {
+        return searchBooks(searchTerm, 0, 0);
+    }
+    
+    // Only the requested page is copied; a limit of 0 returns every match
+    public List<Book> searchBooks(String searchTerm, int offset, int limit) {
+        String term = lower(searchTerm);
+        return readBooks(() -> booksByTitle.stream()
+                .filter(book -> lower(book.getTitle()).contains(term) || lower(book.getAuthor()).contains(term)
+                        || lower(book.getGenre()).contains(term) || lower(book.getIsbn()).contains(term))
+                .sorted(Comparator.comparingInt((Book book) -> lower(book.getTitle()).startsWith(term) ? 1
+                        : lower(book.getAuthor()).startsWith(term) ? 2
+                        : lower(book.getGenre()).startsWith(term) ? 3 : 4))
+                .skip(Math.max(0, offset))
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                .toList());
+    }
+    
+    public List<BookSummary> getBookSummaries(Book.BookStatus status) {
+        lock.readLock().lock();
+        try {
+            Collection<Book> books = (status == null) ? booksByTitle
+                    : booksByStatus.getOrDefault(status, Collections.emptyNavigableSet());
+            List<BookSummary> summaries = new ArrayList<>(books.size());
+            for (Book book : books) {
+                summaries.add(new BookSummary(book.getIsbn(), book.getTitle(), book.getAuthor(), book.getStatus()));
+            }
+            return summaries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Like a LIKE '%term%' over the column: every distinct value containing the term, merged in title order
+    private static Collection<Book> matching(Map<String, NavigableSet<Book>> index, String term) {
+        List<NavigableSet<Book>> hits = new ArrayList<>();
+        index.forEach((value, books) -> {
+            if (value.contains(term)) hits.add(books);
+        });
+        if (hits.size() == 1) return hits.get(0);
+        
+        List<Book> books = new ArrayList<>();
+        hits.forEach(books::addAll);
+        books.sort(BY_TITLE);
+        return books;
+    }
+    
+    private List<Book> readBooks(Supplier<Collection<Book>> query) {
+        lock.readLock().lock();
+        try {
+            Collection<Book> books = query.get();
+            List<Book> copies = new ArrayList<>(books.size());
+            for (Book book : books) {
+                copies.add(copyOf(book));
+            }
+            return copies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Integer> getGenreCounts() {
+        lock.readLock().lock();
+        try {
+            return genreCountsLocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Grouped on the genre exactly as stored, like SQL's GROUP BY; largest first
+    private Map<String, Integer> genreCountsLocked() {
+        return genreCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+    
+    public User getUser(String userId) {
+        lock.readLock().lock();
+        try {
+            User user = usersById.get(userId);
+            return (user != null) ? copyOf(user) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public User getUserByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            String userId = (email != null) ? userIdsByEmail.get(UserDAO.normalizeEmail(email)) : null;
+            return (userId != null) ? copyOf(usersById.get(userId)) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public List<User> getAllUsers() {
+        return readUsers(usersByName, user -> true);
+    }
+    
+    public List<User> getActiveUsers() {
+        return readUsers(activeUsersByName, user -> true);
+    }
+    
+    public List<User> searchUsersByName(String name) {
+        String term = lower(name);
+        return readUsers(usersByName, user -> lower(user.getName()).contains(term));
+    }
+    
+    public List<UserSummary> getUserSummaries(boolean activeOnly) {
+        lock.readLock().lock();
+        try {
+            Collection<User> users = activeOnly ? activeUsersByName : usersByName;
+            List<UserSummary> summaries = new ArrayList<>(users.size());
+            for (User user : users) {
+                summaries.add(new UserSummary(user.getUserId(), user.getName(), user.isActive(), user.getBorrowedBooksCount()));
+            }
+            return summaries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private List<User> readUsers(Collection<User> users, Predicate<User> filter) {
+        lock.readLock().lock();
+        try {
+            List<User> copies = new ArrayList<>();
+            for (User user : users) {
+                if (filter.test(user)) {
+                    copies.add(copyOf(user));
+                }
+            }
+            return copies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public BorrowTransaction getTransaction(String transactionId) {
+        lock.readLock().lock();
+        try {
+            BorrowTransaction transaction = transactionsById.get(transactionId);
+            return (transaction != null) ? copyOf(transaction) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public List<BorrowTransaction> getActiveTransactions() {
+        return readTransactions(() -> activeByDueTime);
+    }
+    
+    // Overdue loans are a prefix of the due-time order
+    public List<BorrowTransaction> getOverdueTransactions(long now) {
+        return readTransactions(() -> activeByDueTime.headSet(dueBefore(now), false));
+    }
+    
+    public BorrowTransaction getActiveTransaction(String isbn, String userId) {
+        lock.readLock().lock();
+        try {
+            Book book = findBookLocked(isbn);
+            NavigableSet<BorrowTransaction> loans = transactionsByBook.get((book != null) ? book.getIsbn() : isbn);
+            if (loans != null) {
+                for (BorrowTransaction transaction : loans) {
+                    if (!transaction.isReturned() && transaction.getUserId().equals(userId)) {
+                        return copyOf(transaction);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public List<TransactionSummary> getActiveTransactionSummaries() {
+        lock.readLock().lock();
+        try {
+            List<TransactionSummary> summaries = new ArrayList<>(activeByDueTime.size());
+            for (BorrowTransaction t : activeByDueTime) {
+                summaries.add(new TransactionSummary(t.getTransactionId(), t.getBookIsbn(), t.getUserId(), t.getDueTime(), false));
+            }
+            return summaries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // The joined listing of TransactionDAO.findDetails, paged the same way; a limit of 0 returns every row.
+    // Only complete for ACTIVE and OVERDUE, as returned loans are not held.
+    public List<TransactionDetails> getTransactionDetails(TransactionDAO.StatusFilter filter, int offset, int limit) {
+        Predicate<BorrowTransaction> matches = statusFilter(filter, System.currentTimeMillis());
+        lock.readLock().lock();
+        try {
+            List<TransactionDetails> details = new ArrayList<>();
+            int skipped = 0;
+            for (BorrowTransaction t : transactionsByBorrowTime) {
+                if (!matches.test(t)) continue;
+                if (skipped++ < offset) continue;
+                
+                Book book = booksByIsbn.get(t.getBookIsbn());
+                User user = usersById.get(t.getUserId());
+                details.add(new TransactionDetails(copyOf(t),
+                        (book != null) ? book.getTitle() : "Unknown book",
+                        (user != null) ? user.getName() : "Unknown user"));
+                if (limit > 0 && details.size() >= limit) break;
+            }
+            return details;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int getTransactionCount(TransactionDAO.StatusFilter filter) {
+        long now = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            return switch (filter != null ? filter : TransactionDAO.StatusFilter.ALL) {
+                case ALL -> returnedTransactions + transactionsById.size();
+                case ACTIVE -> activeByDueTime.size();
+                case RETURNED -> returnedTransactions + transactionsById.size() - activeByDueTime.size();
+                case OVERDUE -> activeByDueTime.headSet(dueBefore(now), false).size();
+            };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static Predicate<BorrowTransaction> statusFilter(TransactionDAO.StatusFilter filter, long now) {
+        return switch (filter != null ? filter : TransactionDAO.StatusFilter.ALL) {
+            case ALL -> t -> true;
+            case ACTIVE -> t -> !t.isReturned();
+            case RETURNED -> BorrowTransaction::isReturned;
+            case OVERDUE -> t -> !t.isReturned() && t.getDueTime() < now;
+        };
+    }
+    
+    // Sorts ahead of every loan due at or after now
+    private static BorrowTransaction dueBefore(long now) {
+        return BorrowTransaction.restore("", "-", "-", now, now, 0, false, 0);
+    }
+    
+    private List<BorrowTransaction> readTransactions(Supplier<Collection<BorrowTransaction>> query) {
+        lock.readLock().lock();
+        try {
+            Collection<BorrowTransaction> transactions = query.get();
+            List<BorrowTransaction> copies = new ArrayList<>(transactions.size());
+            for (BorrowTransaction transaction : transactions) {
+                copies.add(copyOf(transaction));
+            }
+            return copies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // The same keys BookDAO, UserDAO and TransactionDAO report, from counts the model keeps as it goes
+    public Map<String, Integer> getStatistics() {
+        long now = System.currentTimeMillis();
+        Map<String, Integer> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("Total Books", booksByIsbn.size());
+            booksByStatus.forEach((status, books) -> stats.put(status + " Books", books.size()));
+            genreCountsLocked().entrySet().stream()
+                    .limit(5)
+                    .forEach(genre -> stats.put("Genre: " + genre.getKey(), genre.getValue()));
+            
+            stats.put("Total Users", usersById.size());
+            stats.put("Active Users", activeUsersByName.size());
+            stats.put("Users with Books", usersWithBooks);
+            
+            stats.put("Total Transactions", returnedTransactions + transactionsById.size());
+            stats.put("Active Transactions", activeByDueTime.size());
+            stats.put("Overdue Transactions", activeByDueTime.headSet(dueBefore(now), false).size());
+            stats.put("Transactions with Fines", returnedWithFines + transactionsWithFines);
+            stats.put("Total Fines (cents)", (int) ((returnedFines + totalFines) * 100));
+            stats.put("Outstanding Fines (cents)", (int) (outstandingFines * 100));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+    
+    // Compares the model with rows just read from the database; each difference is one line.
+    // Writes that commit while the rows are being read can show up here and clear on the next check.
+    public List<String> compareWith(Collection<Book> books, Collection<User> users, Collection<BorrowTransaction> transactions) {
+        List<String> differences = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            compare("Book", books, Book::getIsbn, booksByIsbn, LibraryReadModel::describe, differences);
+            compare("User", users, User::getUserId, usersById, LibraryReadModel::describe, differences);
+            compare("Transaction", transactions, BorrowTransaction::getTransactionId, transactionsById,
+                    LibraryReadModel::describe, differences);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return differences;
+    }
+    
+    private static <T> void compare(String entity, Collection<T> rows, Function<T, String> key, Map<String, T> model,
+                                    Function<T, String> describe, List<String> differences) {
+        Set<String> seen = new HashSet<>();
+        for (T row : rows) {
+            String id = key.apply(row);
+            seen.add(id);
+            T held = model.get(id);
+            if (held == null) {
+                differences.add(entity + " " + id + " missing from read model");
+            } else if (!describe.apply(held).equals(describe.apply(row))) {
+                differences.add(entity + " " + id + " differs: model " + describe.apply(held) + " vs database " + describe.apply(row));
+            }
+        }
+        for (String id : model.keySet()) {
+            if (!seen.contains(id)) {
+                differences.add(entity + " " + id + " in read model but not in database");
+            }
+        }
+    }
+    
+    private static String describe(Book book) {
+        return String.format("[%s|%s|%s|%d|%s|v%d]", book.getTitle(), book.getAuthor(), book.getGenre(),
+                book.getPublicationYear(), book.getStatus(), book.getVersion());
+    }
+    
+    private static String describe(User user) {
+        return String.format("[%s|%s|%s|%s|%s|v%d]", user.getName(), user.getEmail(), user.getPhoneNumber(),
+                user.isActive() ? "active" : "inactive", new TreeSet<>(user.getBorrowedBooks()), user.getVersion());
+    }
+    
+    private static String describe(BorrowTransaction t) {
+        return String.format("[%s|%s|%d|%d|%s|%.2f|v%d]", t.getBookIsbn(), t.getUserId(), t.getBorrowTime(),
+                t.getDueTime(), t.isReturned() ? "returned@" + t.getReturnTime() : "open", t.getFineAmount(), t.getVersion());
+    }
+    
+    public int getBookCount() {
+        lock.readLock().lock();
+        try {
+            return booksByIsbn.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static String lower(String value) {
+        return (value != null) ? value.toLowerCase(Locale.ROOT) : "";
+    }
+    
+    private static Book copyOf(Book book) {
+        Book copy = new Book(book.getIsbn(), book.getTitle(), book.getAuthor(), book.getGenre(), book.getPublicationYear());
+        copy.setStatus(book.getStatus());
+        copy.setVersion(book.getVersion());
+        return copy;
+    }
+    
+    private static User copyOf(User user) {
+        User copy = new User(user.getUserId(), user.getName(), user.getEmail(), user.getPhoneNumber());
+        copy.setActive(user.isActive());
+        copy.restoreBorrowedBooks(user.getBorrowedBooks());
+        copy.setVersion(user.getVersion());
+        return copy;
+    }
+    
+    private static BorrowTransaction copyOf(BorrowTransaction t) {
+        BorrowTransaction copy = BorrowTransaction.restore(t.getTransactionId(), t.getBookIsbn(), t.getUserId(),
+                t.getBorrowTime(), t.getDueTime(), t.getReturnTime(), t.isReturned(), t.getFineAmount());
+        copy.setVersion(t.getVersion());
+        return copy;
+    }
+}
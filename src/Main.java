@@ -151,6 +151,7 @@ public class Main {
                     schema.createAllTables();
                 } else {
                     System.out.println("📋 Database schema already exists");
+                    schema.upgradeSchema();
                 }
                 
                 schema.printAllTablesInfo();
@@ -205,6 +206,7 @@ public class Main {
                 System.out.println("\n--- Complete Database Integration Demo ---");
                 
                 DatabaseLibrary dbLibrary = new DatabaseLibrary("Java Tutorial Library", "Database Campus");
+                dbLibrary.start();
                 
                 dbLibrary.initializeSampleData();
                 
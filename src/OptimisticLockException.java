@@ -0,0 +1,34 @@
+// Thrown when a save finds the row changed since it was read; reload and reapply the edit, or give up
+public class OptimisticLockException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    private final String entity;
+    private final String id;
+    private final long expectedVersion;
+    private final long actualVersion;
+    
+    public OptimisticLockException(String entity, String id, long expectedVersion, long actualVersion) {
+        super(entity + " " + id + " was changed by someone else (read version " + expectedVersion +
+              ", now " + actualVersion + ")");
+        this.entity = entity;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+    
+    public String getEntity() {
+        return entity;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+    
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
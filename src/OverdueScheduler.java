@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class OverdueScheduler {
+    private static final Comparator<TransactionSummary> BY_DUE_TIME =
+            Comparator.comparingLong(TransactionSummary::dueTime)
+                    .thenComparing(TransactionSummary::transactionId);
+    
+    // Active loans ordered by due time, so the overdue ones always form a prefix
+    private final TreeSet<TransactionSummary> loansByDueTime;
+    private final Map<String, TransactionSummary> loansById;
+    private final List<Consumer<TransactionSummary>> overdueListeners;
+    private long firedThrough;
+    private ScheduledExecutorService ticker;
+    
+    public OverdueScheduler() {
+        this.loansByDueTime = new TreeSet<>(BY_DUE_TIME);
+        this.loansById = new HashMap<>();
+        this.overdueListeners = new ArrayList<>();
+        this.firedThrough = System.currentTimeMillis();
+    }
+    
+    // Loans already overdue at rebuild time are not announced again
+    public synchronized void rebuild(Collection<TransactionSummary> activeLoans) {
+        loansByDueTime.clear();
+        loansById.clear();
+        for (TransactionSummary loan : activeLoans) {
+            if (!loan.isReturned()) {
+                schedule(loan);
+            }
+        }
+        firedThrough = System.currentTimeMillis();
+    }
+    
+    public synchronized void schedule(TransactionSummary loan) {
+        cancel(loan.transactionId());
+        loansByDueTime.add(loan);
+        loansById.put(loan.transactionId(), loan);
+    }
+    
+    public void schedule(BorrowTransaction transaction) {
+        schedule(new TransactionSummary(transaction.getTransactionId(), transaction.getBookIsbn(),
+                transaction.getUserId(), transaction.getDueTime(), false));
+    }
+    
+    public synchronized void cancel(String transactionId) {
+        TransactionSummary loan = loansById.remove(transactionId);
+        if (loan != null) {
+            loansByDueTime.remove(loan);
+        }
+    }
+    
+    public synchronized int size() {
+        return loansById.size();
+    }
+    
+    // Costs O(log n + k) for k overdue loans; no loan that is still on time is visited
+    public synchronized List<TransactionSummary> getOverdue(long now) {
+        return new ArrayList<>(loansByDueTime.headSet(probe(now)));
+    }
+    
+    public List<TransactionSummary> getOverdue() {
+        return getOverdue(System.currentTimeMillis());
+    }
+    
+    public synchronized void addOverdueListener(Consumer<TransactionSummary> listener) {
+        overdueListeners.add(listener);
+    }
+    
+    // Announces every loan whose due time passed since the previous call
+    public void advance(long now) {
+        List<TransactionSummary> becameOverdue;
+        List<Consumer<TransactionSummary>> listeners;
+        synchronized (this) {
+            if (now <= firedThrough) return;
+            becameOverdue = new ArrayList<>(loansByDueTime.subSet(probe(firedThrough), probe(now)));
+            firedThrough = now;
+            listeners = new ArrayList<>(overdueListeners);
+        }
+        
+        // Listeners run outside the lock so they may call back into the scheduler
+        for (TransactionSummary loan : becameOverdue) {
+            for (Consumer<TransactionSummary> listener : listeners) {
+                try {
+                    listener.accept(loan);
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Overdue listener failed for " + loan.transactionId() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    public synchronized void start(long tickMillis) {
+        if (ticker != null) return;
+        
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "overdue-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+    
+    // Sorts before every real loan due at the given time
+    private static TransactionSummary probe(long dueTime) {
+        return new TransactionSummary("", "", "", dueTime, false);
+    }
+}
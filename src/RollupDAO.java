@@ -0,0 +1,193 @@
+import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+public class RollupDAO {
+    public static final String ALL_GENRES = "*";
+    
+    public enum Granularity {
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+        
+        private final ChronoUnit unit;
+        
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+        
+        // Buckets follow the local zone, so a day is the library's day rather than UTC's
+        public long bucketStart(long time) {
+            return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).truncatedTo(unit).toInstant().toEpochMilli();
+        }
+    }
+    
+    // Every zone offset in use is a multiple of 15 minutes, so slices this long never straddle a local hour
+    private static final long BACKFILL_SLICE_MILLIS = 15L * 60 * 1000;
+    
+    private static final String UPSERT_SQL = """
+        INSERT INTO circulation_rollups (granularity, genre, bucket_start, loans, returns, overdue_loans, overdue_returns, fines)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+        ON CONFLICT(granularity, genre, bucket_start) DO UPDATE SET
+            loans = loans + excluded.loans,
+            returns = returns + excluded.returns,
+            overdue_loans = overdue_loans + excluded.overdue_loans,
+            overdue_returns = overdue_returns + excluded.overdue_returns,
+            fines = fines + excluded.fines
+        """;
+    
+    private DatabaseManager dbManager;
+    
+    public RollupDAO() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+    
+    // Runs inside the caller's transaction; the borrow or return commits it together with the loan itself
+    public boolean recordLoan(String genre, long borrowTime) {
+        return record(genre, borrowTime, 1, 0, 0, 0, 0);
+    }
+    
+    public boolean recordReturn(String genre, long returnTime, boolean overdue, double fine) {
+        return record(genre, returnTime, 0, 1, 0, overdue ? 1 : 0, fine);
+    }
+    
+    // Counted in the bucket of the due time, when the overdue scheduler announces the loan
+    public boolean recordOverdue(String genre, long dueTime) {
+        return record(genre, dueTime, 0, 0, 1, 0, 0);
+    }
+    
+    // Counts already summed by the caller, e.g. a write-behind batch per genre and hour; an hour bucket lies within one day
+    public boolean recordTotals(String genre, long time, int loans, int returns, int overdueReturns, double fine) {
+        return record(genre, time, loans, returns, 0, overdueReturns, fine);
+    }
+    
+    private boolean record(String genre, long time, int loans, int returns, int overdueLoans, int overdueReturns, double fine) {
+        String bookGenre = (genre != null) ? genre : "Unknown";
+        try {
+            for (Granularity granularity : Granularity.values()) {
+                long bucketStart = granularity.bucketStart(time);
+                for (String rollupGenre : new String[] {bookGenre, ALL_GENRES}) {
+                    dbManager.executeUpdate(UPSERT_SQL, granularity.name(), rollupGenre, bucketStart,
+                            loans, returns, overdueLoans, overdueReturns, fine);
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to update circulation rollups: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Rebuilds every bucket from the transaction history. SQL groups the rows into 15-minute slices per genre,
+    // and the slices are summed into local buckets here, since SQLite's idea of the local zone may not be Java's.
+    // Loans that came due while the library was down are only counted here, as the scheduler never announced them.
+    public boolean backfill() {
+        String slicesSql = """
+            SELECT COALESCE(b.genre, 'Unknown') as genre, (t.borrow_date / %1$d) * %1$d as slice,
+                   COUNT(*) as loans, 0 as returns, 0 as overdue_loans, 0 as overdue_returns, 0 as fines
+            FROM transactions t LEFT JOIN books b ON b.isbn = t.book_isbn
+            WHERE t.borrow_date IS NOT NULL
+            GROUP BY 1, 2
+            UNION ALL
+            SELECT COALESCE(b.genre, 'Unknown'), (t.return_date / %1$d) * %1$d, 0, COUNT(*), 0,
+                   SUM(CASE WHEN t.return_date > t.due_date THEN 1 ELSE 0 END), SUM(t.fine_amount)
+            FROM transactions t LEFT JOIN books b ON b.isbn = t.book_isbn
+            WHERE t.is_returned = TRUE AND t.return_date IS NOT NULL
+            GROUP BY 1, 2
+            UNION ALL
+            SELECT COALESCE(b.genre, 'Unknown'), (t.due_date / %1$d) * %1$d, 0, 0, COUNT(*), 0, 0
+            FROM transactions t LEFT JOIN books b ON b.isbn = t.book_isbn
+            WHERE t.due_date < ? AND (t.is_returned = FALSE OR t.return_date > t.due_date)
+            GROUP BY 1, 2
+            """.formatted(BACKFILL_SLICE_MILLIS);
+        
+        try {
+            long started = System.currentTimeMillis();
+            // granularity -> genre -> bucket start -> loans, returns, overdue loans, overdue returns, fines
+            Map<Granularity, Map<String, Map<Long, double[]>>> buckets = new EnumMap<>(Granularity.class);
+            try (ResultSet rs = dbManager.executeQuery(slicesSql, started)) {
+                while (rs.next()) {
+                    double[] slice = {rs.getInt("loans"), rs.getInt("returns"), rs.getInt("overdue_loans"),
+                            rs.getInt("overdue_returns"), rs.getDouble("fines")};
+                    long sliceStart = rs.getLong("slice");
+                    for (Granularity granularity : Granularity.values()) {
+                        long bucketStart = granularity.bucketStart(sliceStart);
+                        for (String genre : new String[] {rs.getString("genre"), ALL_GENRES}) {
+                            double[] totals = buckets.computeIfAbsent(granularity, g -> new HashMap<>())
+                                    .computeIfAbsent(genre, g -> new HashMap<>())
+                                    .computeIfAbsent(bucketStart, b -> new double[5]);
+                            for (int i = 0; i < totals.length; i++) {
+                                totals[i] += slice[i];
+                            }
+                        }
+                    }
+                }
+            }
+            
+            dbManager.beginTransaction();
+            dbManager.executeUpdate("DELETE FROM circulation_rollups");
+            for (Map.Entry<Granularity, Map<String, Map<Long, double[]>>> byGranularity : buckets.entrySet()) {
+                for (Map.Entry<String, Map<Long, double[]>> byGenre : byGranularity.getValue().entrySet()) {
+                    for (Map.Entry<Long, double[]> bucket : byGenre.getValue().entrySet()) {
+                        double[] totals = bucket.getValue();
+                        dbManager.executeUpdate(UPSERT_SQL, byGranularity.getKey().name(), byGenre.getKey(), bucket.getKey(),
+                                (int) totals[0], (int) totals[1], (int) totals[2], (int) totals[3], totals[4]);
+                    }
+                }
+            }
+            dbManager.commit();
+            
+            System.out.println("✅ Circulation rollups rebuilt in " + (System.currentTimeMillis() - started) + " ms");
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Failed to rebuild circulation rollups: " + e.getMessage());
+            return false;
+        }
+        
+        new SettingsDAO().updateSetting("rollup_zone", ZoneId.systemDefault().getId());
+        return true;
+    }
+    
+    // Buckets written in another zone, or before buckets followed the zone at all, would not line up with new ones
+    public boolean isAlignedToLocalZone() {
+        return ZoneId.systemDefault().getId().equals(new SettingsDAO().getSetting("rollup_zone", ""));
+    }
+    
+    // A primary key range scan: one row per bucket in [from, to)
+    public List<CirculationRollup> findTrend(Granularity granularity, String genre, long from, long to) {
+        List<CirculationRollup> rollups = new ArrayList<>();
+        String sql = """
+            SELECT bucket_start, genre, loans, returns, overdue_loans, overdue_returns, fines
+            FROM circulation_rollups
+            WHERE granularity = ? AND genre = ? AND bucket_start >= ? AND bucket_start < ?
+            ORDER BY bucket_start
+            """;
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, granularity.name(), (genre != null) ? genre : ALL_GENRES,
+                granularity.bucketStart(from), to)) {
+            while (rs.next()) {
+                rollups.add(new CirculationRollup(
+                    granularity,
+                    rs.getLong("bucket_start"),
+                    rs.getString("genre"),
+                    rs.getInt("loans"),
+                    rs.getInt("returns"),
+                    rs.getInt("overdue_loans"),
+                    rs.getInt("overdue_returns"),
+                    rs.getDouble("fines")
+                ));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error loading circulation trend: " + e.getMessage());
+        }
+        
+        return rollups;
+    }
+}
@@ -0,0 +1,71 @@
+import java.sql.*;
+
+public class SettingsDAO {
+    private DatabaseManager dbManager;
+    
+    public SettingsDAO() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+    
+    public String getSetting(String key, String defaultValue) {
+        String sql = "SELECT setting_value FROM library_settings WHERE setting_key = ?";
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, key)) {
+            if (rs.next()) {
+                return rs.getString("setting_value");
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error reading setting " + key + ": " + e.getMessage());
+        }
+        return defaultValue;
+    }
+    
+    public double getDoubleSetting(String key, double defaultValue) {
+        String value = getSetting(key, null);
+        if (value == null) return defaultValue;
+        
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("⚠️ Invalid numeric value for setting " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+    
+    public int getIntSetting(String key, int defaultValue) {
+        String value = getSetting(key, null);
+        if (value == null) return defaultValue;
+        
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("⚠️ Invalid integer value for setting " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+    
+    public boolean updateSetting(String key, String value) {
+        String sql = """
+            INSERT INTO library_settings (setting_key, setting_value, updated_date)
+            VALUES (?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT(setting_key) DO UPDATE
+            SET setting_value = excluded.setting_value, updated_date = CURRENT_TIMESTAMP
+            """;
+        
+        try {
+            dbManager.executeUpdate(sql, key, value);
+            dbManager.commit();
+            System.out.println("✅ Setting updated: " + key + " = " + value);
+            return true;
+        
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Failed to update setting: " + e.getMessage());
+            return false;
+        }
+    }
+}
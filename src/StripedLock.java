@@ -0,0 +1,119 @@
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class StripedLock {
+    public record StripeStats(int stripe, long acquisitions, long contended, long waitMillis) {
+        
+        public double getContentionRate() {
+            return acquisitions == 0 ? 0.0 : (double) contended / acquisitions;
+        }
+    }
+    
+    // Keys hashing to the same stripe share a lock; more stripes means fewer false conflicts
+    private final ReentrantLock[] locks;
+    private final LongAdder[] acquisitions;
+    private final LongAdder[] contended;
+    private final LongAdder[] waitNanos;
+    private final int mask;
+    
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.acquisitions = new LongAdder[size];
+        this.contended = new LongAdder[size];
+        this.waitNanos = new LongAdder[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+            acquisitions[i] = new LongAdder();
+            contended[i] = new LongAdder();
+            waitNanos[i] = new LongAdder();
+        }
+    }
+    
+    public final class Held implements AutoCloseable {
+        private final int[] stripes;
+        
+        private Held(int[] stripes) {
+            this.stripes = stripes;
+        }
+        
+        @Override
+        public void close() {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+    
+    public Held lock(String... keys) {
+        return lock(Arrays.asList(keys));
+    }
+    
+    // Stripes are always taken in ascending order, so two callers locking overlapping keys cannot deadlock
+    public Held lock(Collection<String> keys) {
+        int[] stripes = keys.stream()
+                .filter(Objects::nonNull)
+                .mapToInt(this::stripeFor)
+                .distinct()
+                .sorted()
+                .toArray();
+        
+        for (int stripe : stripes) {
+            ReentrantLock lock = locks[stripe];
+            if (!lock.tryLock()) {
+                contended[stripe].increment();
+                long started = System.nanoTime();
+                lock.lock();
+                waitNanos[stripe].add(System.nanoTime() - started);
+            }
+            acquisitions[stripe].increment();
+        }
+        return new Held(stripes);
+    }
+    
+    public int getStripeCount() {
+        return locks.length;
+    }
+    
+    public int stripeFor(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+    
+    public List<StripeStats> getStats() {
+        List<StripeStats> stats = new ArrayList<>(locks.length);
+        for (int i = 0; i < locks.length; i++) {
+            stats.add(new StripeStats(i, acquisitions[i].sum(), contended[i].sum(),
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos[i].sum())));
+        }
+        return stats;
+    }
+    
+    // Stripes that had to wait, busiest first
+    public List<StripeStats> getHotStripes(int limit) {
+        List<StripeStats> hot = new ArrayList<>();
+        for (StripeStats stripe : getStats()) {
+            if (stripe.contended() > 0) {
+                hot.add(stripe);
+            }
+        }
+        hot.sort(Comparator.comparingLong(StripeStats::contended).reversed());
+        return hot.subList(0, Math.min(limit, hot.size()));
+    }
+    
+    public String getSummary() {
+        long totalAcquisitions = 0;
+        long totalContended = 0;
+        long totalWaitMillis = 0;
+        for (StripeStats stripe : getStats()) {
+            totalAcquisitions += stripe.acquisitions();
+            totalContended += stripe.contended();
+            totalWaitMillis += stripe.waitMillis();
+        }
+        return String.format("stripes=%d, acquisitions=%d, contended=%d, wait=%d ms",
+                locks.length, totalAcquisitions, totalContended, totalWaitMillis);
+    }
+}
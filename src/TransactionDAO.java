@@ -2,30 +2,39 @@ import java.sql.*;
 import java.util.*;
 
 public class TransactionDAO {
+    private static final int TRANSACTION_ID_BLOCK_SIZE = 100;
+    // Stays under SQLite's default limit on bound parameters
+    private static final int ID_BATCH_SIZE = 500;
+    
+    // Shared so every DAO in the process draws from the same reserved block
+    private static final IdSequence transactionIds = new IdSequence("transaction_id", TRANSACTION_ID_BLOCK_SIZE,
+            "SELECT MAX(CAST(SUBSTR(transaction_id, 2) AS INTEGER)) FROM transactions WHERE transaction_id LIKE 'T%'");
+    
+    public enum StatusFilter {
+        ALL, ACTIVE, OVERDUE, RETURNED
+    }
+    
+    public record ReturnedTotals(int count, int withFines, double fines) {}
+    
     private DatabaseManager dbManager;
     
     public TransactionDAO() {
         this.dbManager = DatabaseManager.getInstance();
     }
     
+    // Unused values of a reserved block are skipped after a restart, so IDs may have gaps
+    public String nextTransactionId() {
+        try {
+            return "T" + String.format("%06d", transactionIds.nextValue());
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to allocate transaction ID: " + e.getMessage());
+            return null;
+        }
+    }
+    
     public boolean createTransaction(BorrowTransaction transaction) {
-        String sql = """
-            INSERT INTO transactions (transaction_id, book_isbn, user_id, borrow_date, 
-                                    due_date, return_date, is_returned, fine_amount, updated_date)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
-            """;
-        
         try {
-            dbManager.executeUpdate(sql,
-                transaction.getTransactionId(),
-                transaction.getBookIsbn(),
-                transaction.getUserId(),
-                transaction.getBorrowDate(),
-                transaction.getDueDate(),
-                transaction.getReturnDate(),
-                transaction.isReturned(),
-                transaction.getFineAmount()
-            );
+            insertTransaction(transaction);
             dbManager.commit();
             System.out.println("✅ Transaction created: " + transaction.getTransactionId());
             return true;
@@ -41,6 +50,25 @@ public class TransactionDAO {
         }
     }
     
+    // Joins the caller's transaction without committing
+    public void insertTransaction(BorrowTransaction transaction) throws SQLException {
+        String sql = """
+            INSERT INTO transactions (transaction_id, book_isbn, user_id, borrow_date, 
+                                    due_date, return_date, is_returned, fine_amount, updated_date)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            """;
+        dbManager.executeUpdate(sql,
+            transaction.getTransactionId(),
+            transaction.getBookIsbn(),
+            transaction.getUserId(),
+            transaction.getBorrowDate(),
+            transaction.getDueDate(),
+            transaction.getReturnDate(),
+            transaction.isReturned(),
+            transaction.getFineAmount()
+        );
+    }
+    
     public BorrowTransaction findById(String transactionId) {
         String sql = "SELECT * FROM transactions WHERE transaction_id = ?";
         
@@ -54,6 +82,55 @@ public class TransactionDAO {
         return null;
     }
     
+    // Open loan per stored book ISBN; a book has at most one at a time
+    public Map<String, BorrowTransaction> findActiveByBookIsbns(Collection<String> isbns) {
+        List<String> isbnList = new ArrayList<>(isbns);
+        Map<String, BorrowTransaction> transactions = new HashMap<>();
+        
+        try {
+            for (int start = 0; start < isbnList.size(); start += ID_BATCH_SIZE) {
+                List<String> batch = isbnList.subList(start, Math.min(start + ID_BATCH_SIZE, isbnList.size()));
+                String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT * FROM transactions WHERE is_returned = FALSE AND book_isbn IN (" + placeholders + ")";
+                
+                try (ResultSet rs = dbManager.executeQuery(sql, batch.toArray())) {
+                    while (rs.next()) {
+                        BorrowTransaction transaction = mapResultSetToTransaction(rs);
+                        transactions.put(transaction.getBookIsbn(), transaction);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error finding active transactions by book: " + e.getMessage());
+        }
+        
+        return transactions;
+    }
+    
+    // Batched IN-list lookups, ordered by due date
+    public List<BorrowTransaction> findByIds(List<String> transactionIds) {
+        List<BorrowTransaction> transactions = new ArrayList<>();
+        
+        try {
+            for (int start = 0; start < transactionIds.size(); start += ID_BATCH_SIZE) {
+                List<String> batch = transactionIds.subList(start, Math.min(start + ID_BATCH_SIZE, transactionIds.size()));
+                String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT * FROM transactions WHERE transaction_id IN (" + placeholders + ")";
+                
+                try (ResultSet rs = dbManager.executeQuery(sql, batch.toArray())) {
+                    while (rs.next()) {
+                        transactions.add(mapResultSetToTransaction(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error finding transactions by ID: " + e.getMessage());
+        }
+        
+        transactions.sort(Comparator.comparingLong(BorrowTransaction::getDueTime));
+        return transactions;
+    }
+    
     public List<BorrowTransaction> findAll() {
         String sql = "SELECT * FROM transactions ORDER BY borrow_date DESC";
         List<BorrowTransaction> transactions = new ArrayList<>();
@@ -114,23 +191,109 @@ public class TransactionDAO {
         return transactions;
     }
     
+    // Rows are rehydrated with their stored due dates, so overdue status is decided in memory
     public List<BorrowTransaction> findOverdueTransactions() {
+        long now = System.currentTimeMillis();
+        List<BorrowTransaction> transactions = new ArrayList<>();
+        for (BorrowTransaction transaction : findActiveTransactions()) {
+            if (transaction.isOverdue(now)) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+    
+    // Titles and names come from the same statement, so a listing never looks books or users up per row
+    public List<TransactionDetails> findDetails(StatusFilter filter, int offset, int limit) {
+        List<Object> parameters = new ArrayList<>();
         String sql = """
-            SELECT * FROM transactions 
-            WHERE is_returned = FALSE AND due_date < CURRENT_TIMESTAMP 
-            ORDER BY due_date
+            SELECT t.*, COALESCE(b.title, 'Unknown book') AS book_title, COALESCE(u.name, 'Unknown user') AS user_name
+            FROM transactions t
+            LEFT JOIN books b ON b.isbn = t.book_isbn
+            LEFT JOIN users u ON u.user_id = t.user_id
+            """ + "WHERE " + statusCondition(filter, parameters) +
+            " ORDER BY t.borrow_date DESC, t.transaction_id LIMIT ? OFFSET ?";
+        // SQLite treats a negative limit as no limit
+        parameters.add(limit > 0 ? limit : -1);
+        parameters.add(Math.max(0, offset));
+        
+        List<TransactionDetails> details = new ArrayList<>();
+        try (ResultSet rs = dbManager.executeQuery(sql, parameters.toArray())) {
+            while (rs.next()) {
+                details.add(new TransactionDetails(
+                    mapResultSetToTransaction(rs),
+                    rs.getString("book_title"),
+                    rs.getString("user_name")
+                ));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving transaction details: " + e.getMessage());
+        }
+        
+        return details;
+    }
+    
+    public int countDetails(StatusFilter filter) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = "SELECT COUNT(*) as count FROM transactions t WHERE " + statusCondition(filter, parameters);
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, parameters.toArray())) {
+            if (rs.next()) {
+                return rs.getInt("count");
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error counting transactions: " + e.getMessage());
+        }
+        return 0;
+    }
+    
+    private String statusCondition(StatusFilter filter, List<Object> parameters) {
+        return switch (filter != null ? filter : StatusFilter.ALL) {
+            case ACTIVE -> "t.is_returned = FALSE";
+            case OVERDUE -> {
+                parameters.add(System.currentTimeMillis());
+                yield "t.is_returned = FALSE AND t.due_date < ?";
+            }
+            case RETURNED -> "t.is_returned = TRUE";
+            case ALL -> "1 = 1";
+        };
+    }
+    
+    // Projections read only the listed columns and are served by a covering index
+    public List<TransactionSummary> findActiveSummaries() {
+        String sql = """
+            SELECT transaction_id, book_isbn, user_id, due_date, is_returned FROM transactions
+            WHERE is_returned = FALSE ORDER BY due_date
             """;
-        List<BorrowTransaction> transactions = new ArrayList<>();
+        List<TransactionSummary> summaries = new ArrayList<>();
         
         try (ResultSet rs = dbManager.executeQuery(sql)) {
             while (rs.next()) {
-                transactions.add(mapResultSetToTransaction(rs));
+                summaries.add(mapResultSetToTransactionSummary(rs));
             }
         } catch (SQLException e) {
-            System.err.println("❌ Error retrieving overdue transactions: " + e.getMessage());
+            System.err.println("❌ Error retrieving active transaction summaries: " + e.getMessage());
         }
         
-        return transactions;
+        return summaries;
+    }
+    
+    public List<TransactionSummary> findOverdueSummaries() {
+        String sql = """
+            SELECT transaction_id, book_isbn, user_id, due_date, is_returned FROM transactions
+            WHERE is_returned = FALSE AND due_date < ? ORDER BY due_date
+            """;
+        List<TransactionSummary> summaries = new ArrayList<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql, new java.util.Date())) {
+            while (rs.next()) {
+                summaries.add(mapResultSetToTransactionSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving overdue transaction summaries: " + e.getMessage());
+        }
+        
+        return summaries;
     }
     
     public BorrowTransaction findActiveTransactionByBookAndUser(String isbn, String userId) {
@@ -153,8 +316,8 @@ public class TransactionDAO {
     public boolean updateTransaction(BorrowTransaction transaction) {
         String sql = """
             UPDATE transactions 
-            SET return_date = ?, is_returned = ?, fine_amount = ?, updated_date = CURRENT_TIMESTAMP
-            WHERE transaction_id = ?
+            SET return_date = ?, is_returned = ?, fine_amount = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP
+            WHERE transaction_id = ? AND version = ?
             """;
         
         try (PreparedStatement stmt = dbManager.getConnection().prepareStatement(sql)) {
@@ -163,18 +326,25 @@ public class TransactionDAO {
             stmt.setBoolean(2, transaction.isReturned());
             stmt.setDouble(3, transaction.getFineAmount());
             stmt.setString(4, transaction.getTransactionId());
+            stmt.setLong(5, transaction.getVersion());
             
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
                 dbManager.commit();
+                transaction.setVersion(transaction.getVersion() + 1);
                 System.out.println("✅ Transaction updated: " + transaction.getTransactionId());
                 return true;
-            } else {
-                System.err.println("❌ No transaction found with ID: " + transaction.getTransactionId());
-                return false;
             }
             
+            Long currentVersion = dbManager.findRowVersion("transactions", "transaction_id", transaction.getTransactionId());
+            if (currentVersion != null) {
+                throw new OptimisticLockException("Transaction", transaction.getTransactionId(),
+                        transaction.getVersion(), currentVersion);
+            }
+            System.err.println("❌ No transaction found with ID: " + transaction.getTransactionId());
+            return false;
+            
         } catch (SQLException e) {
             try {
                 dbManager.rollback();
@@ -186,10 +356,21 @@ public class TransactionDAO {
         }
     }
     
+    // Joins the caller's transaction; false if the loan was already returned
+    public boolean completeReturn(BorrowTransaction transaction) throws SQLException {
+        String sql = """
+            UPDATE transactions
+            SET return_date = ?, is_returned = TRUE, fine_amount = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP
+            WHERE transaction_id = ? AND is_returned = FALSE
+            """;
+        return dbManager.executeUpdate(sql, transaction.getReturnDate(), transaction.getFineAmount(),
+                transaction.getTransactionId()) > 0;
+    }
+    
     public boolean markAsReturned(String transactionId) {
         String sql = """
             UPDATE transactions 
-            SET return_date = CURRENT_TIMESTAMP, is_returned = TRUE, updated_date = CURRENT_TIMESTAMP
+            SET return_date = CURRENT_TIMESTAMP, is_returned = TRUE, version = version + 1, updated_date = CURRENT_TIMESTAMP
             WHERE transaction_id = ?
             """;
         
@@ -211,7 +392,7 @@ public class TransactionDAO {
     }
     
     public boolean updateFineAmount(String transactionId, double fineAmount) {
-        String sql = "UPDATE transactions SET fine_amount = ?, updated_date = CURRENT_TIMESTAMP WHERE transaction_id = ?";
+        String sql = "UPDATE transactions SET fine_amount = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP WHERE transaction_id = ?";
         
         try {
             dbManager.executeUpdate(sql, fineAmount, transactionId);
@@ -252,9 +433,9 @@ public class TransactionDAO {
             // Overdue transactions
             String overdueSql = """
                 SELECT COUNT(*) as count FROM transactions 
-                WHERE is_returned = FALSE AND due_date < CURRENT_TIMESTAMP
+                WHERE is_returned = FALSE AND due_date < ?
                 """;
-            try (ResultSet rs = dbManager.executeQuery(overdueSql)) {
+            try (ResultSet rs = dbManager.executeQuery(overdueSql, new java.util.Date())) {
                 if (rs.next()) {
                     stats.put("Overdue Transactions", rs.getInt("count"));
                 }
@@ -277,6 +458,15 @@ public class TransactionDAO {
                 }
             }
             
+            // Fines still accruing on open loans, kept current by FineAccrualJob
+            String outstandingFinesSql = "SELECT SUM(fine_amount) as total FROM transactions WHERE is_returned = FALSE";
+            try (ResultSet rs = dbManager.executeQuery(outstandingFinesSql)) {
+                if (rs.next()) {
+                    double outstandingFines = rs.getDouble("total");
+                    stats.put("Outstanding Fines (cents)", (int) (outstandingFines * 100));
+                }
+            }
+            
         } catch (SQLException e) {
             System.err.println("❌ Error calculating transaction statistics: " + e.getMessage());
         }
@@ -284,6 +474,46 @@ public class TransactionDAO {
         return stats;
     }
     
+    // What the read model keeps of returned loans in place of their rows
+    public ReturnedTotals getReturnedTotals() {
+        String sql = """
+            SELECT COUNT(*) as count, COALESCE(SUM(fine_amount > 0), 0) as with_fines, COALESCE(SUM(fine_amount), 0) as fines
+            FROM transactions WHERE is_returned = TRUE
+            """;
+        
+        try (ResultSet rs = dbManager.executeQuery(sql)) {
+            if (rs.next()) {
+                return new ReturnedTotals(rs.getInt("count"), rs.getInt("with_fines"), rs.getDouble("fines"));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error totalling returned transactions: " + e.getMessage());
+        }
+        return new ReturnedTotals(0, 0, 0);
+    }
+    
+    public Map<String, Integer> getBorrowCountsByBook() {
+        return getBorrowCounts("book_isbn");
+    }
+    
+    public Map<String, Integer> getBorrowCountsByUser() {
+        return getBorrowCounts("user_id");
+    }
+    
+    private Map<String, Integer> getBorrowCounts(String keyColumn) {
+        String sql = "SELECT " + keyColumn + " as key, COUNT(*) as count FROM transactions GROUP BY " + keyColumn;
+        Map<String, Integer> counts = new HashMap<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql)) {
+            while (rs.next()) {
+                counts.put(rs.getString("key"), rs.getInt("count"));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error counting transactions by " + keyColumn + ": " + e.getMessage());
+        }
+        
+        return counts;
+    }
+    
     public List<BorrowTransaction> getRecentTransactions(int limit) {
         String sql = "SELECT * FROM transactions ORDER BY borrow_date DESC LIMIT ?";
         List<BorrowTransaction> transactions = new ArrayList<>();
@@ -327,31 +557,32 @@ public class TransactionDAO {
     }
     
     private BorrowTransaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
-        String transactionId = rs.getString("transaction_id");
-        String bookIsbn = rs.getString("book_isbn");
-        String userId = rs.getString("user_id");
-        Timestamp borrowDate = rs.getTimestamp("borrow_date");
-        Timestamp dueDate = rs.getTimestamp("due_date");
-        Timestamp returnDate = rs.getTimestamp("return_date");
-        boolean isReturned = rs.getBoolean("is_returned");
-        double fineAmount = rs.getDouble("fine_amount");
-        
-        // Create transaction with basic constructor
-        BorrowTransaction transaction = new BorrowTransaction(transactionId, bookIsbn, userId);
-        
-        // Use reflection or create a special constructor to set the dates properly
-        // For now, we'll work with the existing structure
-        if (isReturned && returnDate != null) {
-            transaction.markAsReturned();
-        }
-        
-        if (fineAmount > 0) {
-            transaction.setFineAmount(fineAmount);
-        }
-        
+        // Dates are bound with setTimestamp, which sqlite-jdbc stores as epoch millis,
+        // so they can be read as longs without a Timestamp per column
+        BorrowTransaction transaction = BorrowTransaction.restore(
+            rs.getString("transaction_id"),
+            rs.getString("book_isbn"),
+            rs.getString("user_id"),
+            rs.getLong("borrow_date"),
+            rs.getLong("due_date"),
+            rs.getLong("return_date"),
+            rs.getBoolean("is_returned"),
+            rs.getDouble("fine_amount")
+        );
+        transaction.setVersion(rs.getLong("version"));
         return transaction;
     }
     
+    private TransactionSummary mapResultSetToTransactionSummary(ResultSet rs) throws SQLException {
+        return new TransactionSummary(
+            rs.getString("transaction_id"),
+            rs.getString("book_isbn"),
+            rs.getString("user_id"),
+            rs.getLong("due_date"),
+            rs.getBoolean("is_returned")
+        );
+    }
+    
     public int getTotalTransactionCount() {
         String sql = "SELECT COUNT(*) as count FROM transactions";
         
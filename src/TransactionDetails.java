@@ -0,0 +1,10 @@
+public record TransactionDetails(BorrowTransaction transaction, String bookTitle, String userName) {
+    
+    public String getFormattedInfo() {
+        String fine = transaction.getFineAmount() > 0 ? String.format(" | Fine: $%.2f", transaction.getFineAmount()) : "";
+        return String.format("%s %s - %s (%s) | %s (%s) | Due: %tm/%<td/%<tY%s",
+                transaction.isReturned() ? "✅" : (transaction.isOverdue() ? "⚠️" : "📖"),
+                transaction.getTransactionId(), bookTitle, transaction.getBookIsbn(),
+                userName, transaction.getUserId(), transaction.getDueTime(), fine);
+    }
+}
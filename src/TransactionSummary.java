@@ -0,0 +1,13 @@
+public record TransactionSummary(String transactionId, String bookIsbn, String userId,
+                                 long dueTime, boolean isReturned) {
+    
+    public boolean isOverdue(long now) {
+        return !isReturned && now > dueTime;
+    }
+    
+    public String getFormattedInfo() {
+        String statusIcon = isReturned ? "✅" : (isOverdue(System.currentTimeMillis()) ? "⚠️" : "📖");
+        return String.format("%s Transaction %s - Book: %s | User: %s | Due: %tm/%<td/%<tY",
+                statusIcon, transactionId, bookIsbn, userId, dueTime);
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.*;
+
+public class TrigramIndex {
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+    private static final int MAX_CANDIDATES = 200;
+    private static final double MIN_TRIGRAM_SCORE = 0.3;
+    
+    private static class Document {
+        private final String id;
+        private final String normalizedText;
+        private final Set<String> trigrams;
+        
+        Document(String id, String normalizedText, Set<String> trigrams) {
+            this.id = id;
+            this.normalizedText = normalizedText;
+            this.trigrams = trigrams;
+        }
+    }
+    
+    private static class Candidate {
+        private final Document document;
+        private final double trigramScore;
+        private double editScore;
+        
+        Candidate(Document document, double trigramScore) {
+            this.document = document;
+            this.trigramScore = trigramScore;
+        }
+    }
+    
+    private final Map<String, Set<String>> postings;
+    private final Map<String, Document> documentsById;
+    private final long budgetNanos;
+    
+    public TrigramIndex() {
+        this(DEFAULT_BUDGET_MILLIS);
+    }
+    
+    public TrigramIndex(long budgetMillis) {
+        this.postings = new HashMap<>();
+        this.documentsById = new HashMap<>();
+        this.budgetNanos = Math.max(1, budgetMillis) * 1_000_000L;
+    }
+    
+    // Each word is padded so that its first and last letters also form trigrams
+    private static Set<String> trigramsOf(String normalizedText) {
+        Set<String> trigrams = new HashSet<>();
+        for (String word : normalizedText.split(" ")) {
+            if (word.isEmpty()) continue;
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+    
+    public void put(String id, String text) {
+        if (id == null || text == null) return;
+        remove(id);
+        
+        String normalizedText = AutocompleteIndex.normalize(text);
+        if (normalizedText.isEmpty()) return;
+        
+        Document document = new Document(id, normalizedText, trigramsOf(normalizedText));
+        documentsById.put(id, document);
+        for (String trigram : document.trigrams) {
+            postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(id);
+        }
+    }
+    
+    public void remove(String id) {
+        Document document = documentsById.remove(id);
+        if (document == null) return;
+        
+        for (String trigram : document.trigrams) {
+            Set<String> ids = postings.get(trigram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+    
+    public boolean contains(String id) {
+        return documentsById.containsKey(id);
+    }
+    
+    public int size() {
+        return documentsById.size();
+    }
+    
+    public void clear() {
+        postings.clear();
+        documentsById.clear();
+    }
+    
+    // Ids of the closest matches, best first
+    public List<String> search(String query, int limit) {
+        String normalizedQuery = AutocompleteIndex.normalize(query);
+        if (normalizedQuery.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        
+        // Walk the rarest trigrams first so the candidate cap keeps the most selective matches
+        Set<String> queryTrigrams = trigramsOf(normalizedQuery);
+        List<Set<String>> lists = new ArrayList<>();
+        for (String trigram : queryTrigrams) {
+            Set<String> ids = postings.get(trigram);
+            if (ids != null) {
+                lists.add(ids);
+            }
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        
+        Map<String, Integer> sharedCounts = new HashMap<>();
+        for (Set<String> ids : lists) {
+            for (String id : ids) {
+                if (sharedCounts.size() >= MAX_CANDIDATES && !sharedCounts.containsKey(id)) {
+                    continue;
+                }
+                sharedCounts.merge(id, 1, Integer::sum);
+            }
+            if (System.nanoTime() > deadline) break;
+        }
+        
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : sharedCounts.entrySet()) {
+            double trigramScore = (double) entry.getValue() / queryTrigrams.size();
+            if (trigramScore >= MIN_TRIGRAM_SCORE) {
+                candidates.add(new Candidate(documentsById.get(entry.getKey()), trigramScore));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.trigramScore).reversed());
+        
+        // Edit distance is the expensive step, so it only re-scores while budget remains. The two scores are on
+        // different scales, so candidates it didn't reach stay behind the re-scored ones in trigram order.
+        int rescored = 0;
+        while (rescored < candidates.size() && System.nanoTime() <= deadline) {
+            Candidate candidate = candidates.get(rescored++);
+            candidate.editScore = bestWindowSimilarity(normalizedQuery, candidate.document.normalizedText);
+        }
+        candidates.subList(0, rescored).sort(Comparator.comparingDouble((Candidate c) -> c.editScore)
+                .thenComparingDouble(c -> c.trigramScore)
+                .reversed());
+        
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < candidates.size() && results.size() < limit; i++) {
+            results.add(candidates.get(i).document.id);
+        }
+        return results;
+    }
+    
+    // Compares the query against every run of the same number of words in the text
+    private static double bestWindowSimilarity(String query, String text) {
+        String[] queryWords = query.split(" ");
+        String[] textWords = text.split(" ");
+        int window = Math.min(queryWords.length, textWords.length);
+        
+        double best = 0;
+        for (int start = 0; start + window <= textWords.length; start++) {
+            String slice = String.join(" ", Arrays.copyOfRange(textWords, start, start + window));
+            int distance = levenshtein(query, slice);
+            double similarity = 1.0 - (double) distance / Math.max(query.length(), slice.length());
+            best = Math.max(best, similarity);
+        }
+        return best;
+    }
+    
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -10,6 +10,7 @@ public class User {
     private Date registrationDate;
     private List<String> borrowedBooks;
     private boolean isActive;
+    private long version;
     
     public User(String userId, String name, String email) {
         if (userId == null || userId.trim().isEmpty()) {
@@ -86,6 +87,14 @@ public class User {
         this.isActive = active;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     public boolean canBorrowMoreBooks() {
         return isActive && borrowedBooks.size() < MAX_BOOKS_LIMIT;
     }
@@ -116,6 +125,12 @@ public class User {
         return borrowedBooks.remove(isbn);
     }
     
+    // Loads persisted loans as-is; the borrowing rules were already checked when each loan was made
+    public void restoreBorrowedBooks(Collection<String> isbns) {
+        borrowedBooks.clear();
+        borrowedBooks.addAll(isbns);
+    }
+    
     public void deactivateAccount() {
         this.isActive = false;
     }
@@ -1,18 +1,167 @@
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class UserDAO {
+    public enum CountUpdateResult {
+        APPLIED,
+        REJECTED,
+        ERROR
+    }
+    
+    private static final double DEFAULT_FILTER_FPP = 0.01;
+    private static final int MIN_FILTER_CAPACITY = 1024;
+    // After a failed first build, probes go to the table for this long before the next attempt
+    private static final long FILTER_RETRY_MILLIS = 30_000;
+    // Stays under SQLite's default limit on bound parameters
+    private static final int HYDRATION_BATCH_SIZE = 500;
+    private static final int BULK_CHUNK_SIZE = 500;
+    
+    // The guard keeps concurrent checkouts from pushing a user past the limit
+    private static final String INCREMENT_COUNT_SQL = """
+        UPDATE users SET borrowed_books_count = borrowed_books_count + 1, version = version + 1, updated_date = CURRENT_TIMESTAMP
+        WHERE user_id = ? AND is_active = TRUE AND borrowed_books_count < max_books_limit
+        """;
+    private static final String DECREMENT_COUNT_SQL = """
+        UPDATE users SET borrowed_books_count = borrowed_books_count - 1, version = version + 1, updated_date = CURRENT_TIMESTAMP
+        WHERE user_id = ? AND borrowed_books_count > 0
+        """;
+    
+    // Shared by all DAO instances so creates through any of them are visible
+    private static volatile BloomFilter userIdFilter;
+    private static volatile long userIdFilterRetryAt;
+    
+    // Normalized email -> user ID for every user, so email lookups resolve without a table probe
+    private static final Map<String, String> userIdsByEmail = new ConcurrentHashMap<>();
+    private static final Map<String, String> emailsByUserId = new ConcurrentHashMap<>();
+    private static volatile boolean emailIndexLoaded;
+    
     private DatabaseManager dbManager;
     
     public UserDAO() {
         this.dbManager = DatabaseManager.getInstance();
     }
     
+    private BloomFilter getUserIdFilter() {
+        BloomFilter filter = userIdFilter;
+        if (filter == null) {
+            synchronized (UserDAO.class) {
+                if (userIdFilter == null && System.currentTimeMillis() >= userIdFilterRetryAt) {
+                    rebuildUserIdFilter();
+                }
+                filter = userIdFilter;
+            }
+        }
+        return filter;
+    }
+    
+    public void rebuildUserIdFilter() {
+        double fpp = new SettingsDAO().getDoubleSetting("existence_filter_fpp", DEFAULT_FILTER_FPP);
+        if (fpp <= 0 || fpp >= 1) {
+            fpp = DEFAULT_FILTER_FPP;
+        }
+        
+        synchronized (UserDAO.class) {
+            // Leave headroom for users registered after startup
+            BloomFilter filter = new BloomFilter(Math.max(MIN_FILTER_CAPACITY, getTotalUserCount() * 2), fpp);
+            
+            try (ResultSet rs = dbManager.executeQuery("SELECT user_id FROM users")) {
+                while (rs.next()) {
+                    filter.put(rs.getString("user_id"));
+                }
+            } catch (SQLException e) {
+                // Without a complete key scan the new filter could report false negatives; the previous one,
+                // kept current by every create, is still safe to use
+                System.err.println("❌ Error building user ID existence filter: " + e.getMessage() +
+                        (userIdFilter != null ? " - keeping the previous filter" : ""));
+                userIdFilterRetryAt = System.currentTimeMillis() + FILTER_RETRY_MILLIS;
+                return;
+            }
+            
+            userIdFilter = filter;
+            System.out.println("🔄 User ID existence filter rebuilt: " + filter.getInsertionCount() + " keys");
+        }
+    }
+    
+    // Under the rebuild's lock, so a rebuild either scans the committed rows or is in place before the put
+    private static void addToUserIdFilter(Collection<String> userIds) {
+        synchronized (UserDAO.class) {
+            BloomFilter filter = userIdFilter;
+            if (filter != null) {
+                userIds.forEach(filter::put);
+            }
+        }
+    }
+    
+    public String getUserIdFilterSummary() {
+        BloomFilter filter = getUserIdFilter();
+        return filter != null ? filter.getSummary() : "not available";
+    }
+    
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private boolean ensureEmailIndex() {
+        if (!emailIndexLoaded) {
+            synchronized (UserDAO.class) {
+                if (!emailIndexLoaded) {
+                    rebuildEmailIndex();
+                }
+            }
+        }
+        return emailIndexLoaded;
+    }
+    
+    public void rebuildEmailIndex() {
+        synchronized (UserDAO.class) {
+            Map<String, String> loaded = new HashMap<>();
+            try (ResultSet rs = dbManager.executeQuery("SELECT user_id, email_normalized FROM users WHERE email_normalized IS NOT NULL")) {
+                while (rs.next()) {
+                    loaded.put(rs.getString("email_normalized"), rs.getString("user_id"));
+                }
+            } catch (SQLException e) {
+                // Lookups fall back to the email_normalized index until a load succeeds
+                System.err.println("❌ Error loading email index: " + e.getMessage());
+                emailIndexLoaded = false;
+                return;
+            }
+            
+            userIdsByEmail.clear();
+            emailsByUserId.clear();
+            loaded.forEach((email, userId) -> {
+                userIdsByEmail.put(email, userId);
+                emailsByUserId.put(userId, email);
+            });
+            emailIndexLoaded = true;
+        }
+    }
+    
+    private static void indexEmail(String userId, String email) {
+        synchronized (UserDAO.class) {
+            unindexEmail(userId);
+            String normalizedEmail = normalizeEmail(email);
+            userIdsByEmail.put(normalizedEmail, userId);
+            emailsByUserId.put(userId, normalizedEmail);
+        }
+    }
+    
+    private static void unindexEmail(String userId) {
+        synchronized (UserDAO.class) {
+            String previousEmail = emailsByUserId.remove(userId);
+            if (previousEmail != null) {
+                userIdsByEmail.remove(previousEmail, userId);
+            }
+        }
+    }
+    
     public boolean createUser(User user) {
         String sql = """
-            INSERT INTO users (user_id, name, email, phone_number, registration_date, 
+            INSERT INTO users (user_id, name, email, email_normalized, phone_number, registration_date, 
                               is_active, borrowed_books_count, max_books_limit, updated_date)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
             """;
         
         try {
@@ -20,6 +169,7 @@ public class UserDAO {
                 user.getUserId(),
                 user.getName(),
                 user.getEmail(),
+                normalizeEmail(user.getEmail()),
                 user.getPhoneNumber(),
                 user.getRegistrationDate(),
                 user.isActive(),
@@ -27,6 +177,11 @@ public class UserDAO {
                 User.MAX_BOOKS_LIMIT
             );
             dbManager.commit();
+            
+            addToUserIdFilter(List.of(user.getUserId()));
+            if (emailIndexLoaded) {
+                indexEmail(user.getUserId(), user.getEmail());
+            }
             System.out.println("✅ User created in database: " + user.getName());
             return true;
             
@@ -47,11 +202,21 @@ public class UserDAO {
     }
     
     public User findById(String userId) {
+        BloomFilter filter = getUserIdFilter();
+        if (filter != null && !filter.mightContain(userId)) {
+            return null;
+        }
+        
         String sql = "SELECT * FROM users WHERE user_id = ?";
         
         try (ResultSet rs = dbManager.executeQuery(sql, userId)) {
             if (rs.next()) {
-                return mapResultSetToUser(rs);
+                User user = mapResultSetToUser(rs);
+                hydrateBorrowedBooks(List.of(user));
+                return user;
+            }
+            if (filter != null) {
+                filter.recordFalsePositive();
             }
         } catch (SQLException e) {
             System.err.println("❌ Error finding user by ID: " + e.getMessage());
@@ -59,12 +224,43 @@ public class UserDAO {
         return null;
     }
     
-    public User findByEmail(String email) {
-        String sql = "SELECT * FROM users WHERE email = ?";
+    // Keyed by user ID; IDs with no matching user are left out
+    public Map<String, User> findByIds(Collection<String> userIds) {
+        List<String> ids = new ArrayList<>(userIds);
+        List<User> users = new ArrayList<>();
+        try {
+            for (int start = 0; start < ids.size(); start += HYDRATION_BATCH_SIZE) {
+                List<String> batch = ids.subList(start, Math.min(start + HYDRATION_BATCH_SIZE, ids.size()));
+                String sql = "SELECT * FROM users WHERE user_id IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                try (ResultSet rs = dbManager.executeQuery(sql, batch.toArray())) {
+                    while (rs.next()) {
+                        users.add(mapResultSetToUser(rs));
+                    }
+                }
+            }
+            hydrateBorrowedBooks(users);
+        } catch (SQLException e) {
+            System.err.println("❌ Error finding users by ID: " + e.getMessage());
+        }
+        
+        Map<String, User> usersById = new HashMap<>();
+        users.forEach(user -> usersById.put(user.getUserId(), user));
+        return usersById;
+    }
+    
+    // Case-insensitive; answered from the in-memory email index once it is loaded
+    public String findUserIdByEmail(String email) {
+        String normalizedEmail = normalizeEmail(email);
+        if (normalizedEmail == null) return null;
+        
+        if (ensureEmailIndex()) {
+            return userIdsByEmail.get(normalizedEmail);
+        }
         
-        try (ResultSet rs = dbManager.executeQuery(sql, email)) {
+        String sql = "SELECT user_id FROM users WHERE email_normalized = ?";
+        try (ResultSet rs = dbManager.executeQuery(sql, normalizedEmail)) {
             if (rs.next()) {
-                return mapResultSetToUser(rs);
+                return rs.getString("user_id");
             }
         } catch (SQLException e) {
             System.err.println("❌ Error finding user by email: " + e.getMessage());
@@ -72,6 +268,11 @@ public class UserDAO {
         return null;
     }
     
+    public User findByEmail(String email) {
+        String userId = findUserIdByEmail(email);
+        return userId != null ? findById(userId) : null;
+    }
+    
     public List<User> findAll() {
         String sql = "SELECT * FROM users ORDER BY name";
         List<User> users = new ArrayList<>();
@@ -80,6 +281,7 @@ public class UserDAO {
             while (rs.next()) {
                 users.add(mapResultSetToUser(rs));
             }
+            hydrateBorrowedBooks(users);
         } catch (SQLException e) {
             System.err.println("❌ Error retrieving all users: " + e.getMessage());
         }
@@ -95,6 +297,7 @@ public class UserDAO {
             while (rs.next()) {
                 users.add(mapResultSetToUser(rs));
             }
+            hydrateBorrowedBooks(users);
         } catch (SQLException e) {
             System.err.println("❌ Error searching users by name: " + e.getMessage());
         }
@@ -110,6 +313,7 @@ public class UserDAO {
             while (rs.next()) {
                 users.add(mapResultSetToUser(rs));
             }
+            hydrateBorrowedBooks(users);
         } catch (SQLException e) {
             System.err.println("❌ Error retrieving active users: " + e.getMessage());
         }
@@ -117,34 +321,79 @@ public class UserDAO {
         return users;
     }
     
+    // Projections read only the listed columns and are served by a covering index
+    public List<UserSummary> findAllSummaries() {
+        String sql = "SELECT user_id, name, is_active, borrowed_books_count FROM users ORDER BY name";
+        List<UserSummary> summaries = new ArrayList<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql)) {
+            while (rs.next()) {
+                summaries.add(mapResultSetToUserSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving user summaries: " + e.getMessage());
+        }
+        
+        return summaries;
+    }
+    
+    public List<UserSummary> findActiveSummaries() {
+        String sql = """
+            SELECT user_id, name, is_active, borrowed_books_count FROM users
+            WHERE is_active = TRUE ORDER BY name
+            """;
+        List<UserSummary> summaries = new ArrayList<>();
+        
+        try (ResultSet rs = dbManager.executeQuery(sql)) {
+            while (rs.next()) {
+                summaries.add(mapResultSetToUserSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error retrieving active user summaries: " + e.getMessage());
+        }
+        
+        return summaries;
+    }
+    
+    // Version-checked like BookDAO.updateBook, so a stale copy cannot overwrite a newer borrow count
     public boolean updateUser(User user) {
         String sql = """
             UPDATE users 
-            SET name = ?, email = ?, phone_number = ?, is_active = ?, 
-                borrowed_books_count = ?, max_books_limit = ?, updated_date = CURRENT_TIMESTAMP
-            WHERE user_id = ?
+            SET name = ?, email = ?, email_normalized = ?, phone_number = ?, is_active = ?, 
+                borrowed_books_count = ?, max_books_limit = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP
+            WHERE user_id = ? AND version = ?
             """;
         
         try (PreparedStatement stmt = dbManager.getConnection().prepareStatement(sql)) {
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
-            stmt.setString(3, user.getPhoneNumber());
-            stmt.setBoolean(4, user.isActive());
-            stmt.setInt(5, user.getBorrowedBooksCount());
-            stmt.setInt(6, User.MAX_BOOKS_LIMIT);
-            stmt.setString(7, user.getUserId());
+            stmt.setString(3, normalizeEmail(user.getEmail()));
+            stmt.setString(4, user.getPhoneNumber());
+            stmt.setBoolean(5, user.isActive());
+            stmt.setInt(6, user.getBorrowedBooksCount());
+            stmt.setInt(7, User.MAX_BOOKS_LIMIT);
+            stmt.setString(8, user.getUserId());
+            stmt.setLong(9, user.getVersion());
             
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
                 dbManager.commit();
+                user.setVersion(user.getVersion() + 1);
+                if (emailIndexLoaded) {
+                    indexEmail(user.getUserId(), user.getEmail());
+                }
                 System.out.println("✅ User updated: " + user.getName());
                 return true;
-            } else {
-                System.err.println("❌ No user found with ID: " + user.getUserId());
-                return false;
             }
             
+            Long currentVersion = dbManager.findRowVersion("users", "user_id", user.getUserId());
+            if (currentVersion != null) {
+                throw new OptimisticLockException("User", user.getUserId(), user.getVersion(), currentVersion);
+            }
+            System.err.println("❌ No user found with ID: " + user.getUserId());
+            return false;
+            
         } catch (SQLException e) {
             try {
                 dbManager.rollback();
@@ -157,7 +406,7 @@ public class UserDAO {
     }
     
     public boolean updateBorrowedBooksCount(String userId, int newCount) {
-        String sql = "UPDATE users SET borrowed_books_count = ?, updated_date = CURRENT_TIMESTAMP WHERE user_id = ?";
+        String sql = "UPDATE users SET borrowed_books_count = ?, version = version + 1, updated_date = CURRENT_TIMESTAMP WHERE user_id = ?";
         
         try {
             dbManager.executeUpdate(sql, newCount, userId);
@@ -175,6 +424,54 @@ public class UserDAO {
         }
     }
     
+    // Single guarded statement: rejected for missing or inactive users and at the borrow limit
+    public CountUpdateResult incrementBorrowedBooksCount(String userId) {
+        return applyCountUpdate(INCREMENT_COUNT_SQL, userId);
+    }
+    
+    // Joins the caller's transaction; false means the user is missing, inactive or at the limit
+    public boolean reserveBorrowSlot(String userId) throws SQLException {
+        return dbManager.executeUpdate(INCREMENT_COUNT_SQL, userId) > 0;
+    }
+    
+    // Rejected rather than going below zero
+    public CountUpdateResult decrementBorrowedBooksCount(String userId) {
+        return applyCountUpdate(DECREMENT_COUNT_SQL, userId);
+    }
+    
+    // Joins the caller's transaction; false means the count was already zero
+    public boolean releaseBorrowSlot(String userId) throws SQLException {
+        return dbManager.executeUpdate(DECREMENT_COUNT_SQL, userId) > 0;
+    }
+    
+    // Joins the caller's transaction: a user's net change over a write-behind batch in one statement, with the version
+    // raised as in BookDAO.applyStatus. False means the user is missing or the count would go below zero; limits
+    // were checked when the loans were made.
+    public boolean adjustBorrowSlots(String userId, int delta, long version) throws SQLException {
+        String sql = """
+            UPDATE users SET borrowed_books_count = borrowed_books_count + ?, version = MAX(version + 1, ?), updated_date = CURRENT_TIMESTAMP
+            WHERE user_id = ? AND borrowed_books_count + ? >= 0
+            """;
+        return dbManager.executeUpdate(sql, delta, version, userId, delta) > 0;
+    }
+    
+    private CountUpdateResult applyCountUpdate(String sql, String userId) {
+        try {
+            int rowsAffected = dbManager.executeUpdate(sql, userId);
+            dbManager.commit();
+            return rowsAffected > 0 ? CountUpdateResult.APPLIED : CountUpdateResult.REJECTED;
+            
+        } catch (SQLException e) {
+            try {
+                dbManager.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+            }
+            System.err.println("❌ Failed to update borrowed books count: " + e.getMessage());
+            return CountUpdateResult.ERROR;
+        }
+    }
+    
     public boolean deleteUser(String userId) {
         // Check if user has active borrowings
         if (hasActiveBorrowings(userId)) {
@@ -190,6 +487,7 @@ public class UserDAO {
             
             if (rowsAffected > 0) {
                 dbManager.commit();
+                unindexEmail(userId);
                 System.out.println("✅ User deleted: " + userId);
                 return true;
             } else {
@@ -208,6 +506,195 @@ public class UserDAO {
         }
     }
     
+    // Streams users in, one transaction per chunk; duplicate IDs and emails are skipped, not failed
+    public BulkOperationResult importUsers(Iterator<User> users, Consumer<BulkOperationResult> progress) {
+        int processed = 0, applied = 0, skipped = 0, failed = 0;
+        Set<String> seenIds = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        
+        List<User> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+        while (users.hasNext()) {
+            chunk.clear();
+            while (users.hasNext() && chunk.size() < BULK_CHUNK_SIZE) {
+                chunk.add(users.next());
+            }
+            processed += chunk.size();
+            
+            // A chunk's IDs and emails only count as seen once it is in, so a failed chunk doesn't shadow later rows
+            Set<String> chunkIds = new HashSet<>();
+            Set<String> chunkEmails = new HashSet<>();
+            List<User> fresh = null;
+            try {
+                fresh = removeDuplicates(chunk, seenIds, seenEmails, chunkIds, chunkEmails);
+                insertUserBatch(fresh);
+                applied += fresh.size();
+                skipped += chunk.size() - fresh.size();
+                seenIds.addAll(chunkIds);
+                seenEmails.addAll(chunkEmails);
+            } catch (SQLException e) {
+                try {
+                    dbManager.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+                }
+                System.err.println("❌ Failed to import user chunk: " + e.getMessage());
+                if (fresh != null) {
+                    skipped += chunk.size() - fresh.size();
+                    failed += fresh.size();
+                } else {
+                    failed += chunk.size();
+                }
+            }
+            
+            if (progress != null) {
+                progress.accept(new BulkOperationResult(processed, applied, skipped, failed));
+            }
+        }
+        
+        BloomFilter filter = getUserIdFilter();
+        if (filter != null && filter.isOverCapacity()) {
+            rebuildUserIdFilter();
+        }
+        
+        BulkOperationResult result = new BulkOperationResult(processed, applied, skipped, failed);
+        System.out.println("✅ User import finished: " + result.getFormattedInfo());
+        return result;
+    }
+    
+    private List<User> removeDuplicates(List<User> chunk, Set<String> seenIds, Set<String> seenEmails,
+                                        Set<String> chunkIds, Set<String> chunkEmails) throws SQLException {
+        // Only IDs the filter can't rule out need checking against the table
+        BloomFilter filter = getUserIdFilter();
+        List<Object> possibleIds = new ArrayList<>();
+        for (User user : chunk) {
+            if (filter == null || filter.mightContain(user.getUserId())) {
+                possibleIds.add(user.getUserId());
+            }
+        }
+        Set<String> existingIds = findExisting("user_id", possibleIds);
+        
+        Set<String> existingEmails;
+        if (ensureEmailIndex()) {
+            existingEmails = userIdsByEmail.keySet();
+        } else {
+            List<Object> emails = new ArrayList<>();
+            chunk.forEach(user -> emails.add(normalizeEmail(user.getEmail())));
+            existingEmails = findExisting("email_normalized", emails);
+        }
+        
+        List<User> fresh = new ArrayList<>(chunk.size());
+        for (User user : chunk) {
+            String normalizedEmail = normalizeEmail(user.getEmail());
+            if (existingIds.contains(user.getUserId()) || existingEmails.contains(normalizedEmail)) {
+                continue;
+            }
+            // Also catches duplicates within the import itself
+            if (seenIds.contains(user.getUserId()) || seenEmails.contains(normalizedEmail)
+                    || chunkIds.contains(user.getUserId()) || chunkEmails.contains(normalizedEmail)) {
+                continue;
+            }
+            chunkIds.add(user.getUserId());
+            chunkEmails.add(normalizedEmail);
+            fresh.add(user);
+        }
+        return fresh;
+    }
+    
+    private Set<String> findExisting(String column, List<Object> values) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        if (values.isEmpty()) return existing;
+        
+        String placeholders = String.join(", ", Collections.nCopies(values.size(), "?"));
+        String sql = "SELECT " + column + " FROM users WHERE " + column + " IN (" + placeholders + ")";
+        try (ResultSet rs = dbManager.executeQuery(sql, values.toArray())) {
+            while (rs.next()) {
+                existing.add(rs.getString(column));
+            }
+        }
+        return existing;
+    }
+    
+    private void insertUserBatch(List<User> users) throws SQLException {
+        if (users.isEmpty()) return;
+        
+        String sql = """
+            INSERT INTO users (user_id, name, email, email_normalized, phone_number, registration_date, 
+                              is_active, borrowed_books_count, max_books_limit, updated_date)
+            VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?, CURRENT_TIMESTAMP)
+            """;
+        
+        dbManager.beginTransaction();
+        try (PreparedStatement stmt = dbManager.getConnection().prepareStatement(sql)) {
+            for (User user : users) {
+                stmt.setString(1, user.getUserId());
+                stmt.setString(2, user.getName());
+                stmt.setString(3, user.getEmail());
+                stmt.setString(4, normalizeEmail(user.getEmail()));
+                stmt.setString(5, user.getPhoneNumber());
+                stmt.setTimestamp(6, new Timestamp(user.getRegistrationDate().getTime()));
+                stmt.setBoolean(7, user.isActive());
+                stmt.setInt(8, User.MAX_BOOKS_LIMIT);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        dbManager.commit();
+        
+        addToUserIdFilter(users.stream().map(User::getUserId).toList());
+        for (User user : users) {
+            if (emailIndexLoaded) {
+                indexEmail(user.getUserId(), user.getEmail());
+            }
+        }
+    }
+    
+    // Set-based: one UPDATE per chunk of IDs; unknown or already inactive users count as skipped
+    public BulkOperationResult deactivateUsers(Collection<String> userIds, Consumer<BulkOperationResult> progress) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        int processed = 0, applied = 0, failed = 0;
+        
+        for (int start = 0; start < ids.size(); start += BULK_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(start, Math.min(start + BULK_CHUNK_SIZE, ids.size()));
+            processed += chunk.size();
+            
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            String sql = "UPDATE users SET is_active = FALSE, version = version + 1, updated_date = CURRENT_TIMESTAMP " +
+                         "WHERE is_active = TRUE AND user_id IN (" + placeholders + ")";
+            try {
+                dbManager.beginTransaction();
+                applied += dbManager.executeUpdate(sql, chunk.toArray());
+                dbManager.commit();
+            } catch (SQLException e) {
+                try {
+                    dbManager.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("❌ Rollback failed: " + rollbackEx.getMessage());
+                }
+                System.err.println("❌ Failed to deactivate user chunk: " + e.getMessage());
+                failed += chunk.size();
+            }
+            
+            if (progress != null) {
+                progress.accept(new BulkOperationResult(processed, applied, processed - applied - failed, failed));
+            }
+        }
+        
+        BulkOperationResult result = new BulkOperationResult(processed, applied, processed - applied - failed, failed);
+        System.out.println("✅ User deactivation finished: " + result.getFormattedInfo());
+        return result;
+    }
+    
+    // The predicate sees the lightweight projection, so no full users are loaded
+    public BulkOperationResult deactivateUsersWhere(Predicate<UserSummary> predicate, Consumer<BulkOperationResult> progress) {
+        List<String> userIds = new ArrayList<>();
+        for (UserSummary summary : findActiveSummaries()) {
+            if (predicate.test(summary)) {
+                userIds.add(summary.userId());
+            }
+        }
+        return deactivateUsers(userIds, progress);
+    }
+    
     private boolean hasActiveBorrowings(String userId) {
         String sql = "SELECT COUNT(*) as count FROM transactions WHERE user_id = ? AND is_returned = FALSE";
         
@@ -262,19 +749,51 @@ public class UserDAO {
         String email = rs.getString("email");
         String phoneNumber = rs.getString("phone_number");
         boolean isActive = rs.getBoolean("is_active");
-        int borrowedBooksCount = rs.getInt("borrowed_books_count");
         
         User user = new User(userId, name, email, phoneNumber);
         user.setActive(isActive);
-        
-        // Restore borrowed books count (simplified - in real system would load actual ISBNs)
-        for (int i = 0; i < borrowedBooksCount; i++) {
-            user.borrowBook("dummy-isbn-" + i); // Placeholder
-        }
+        user.setVersion(rs.getLong("version"));
         
         return user;
     }
     
+    // Fills in each user's borrowed ISBNs from their open transactions, one query per batch of users
+    private void hydrateBorrowedBooks(List<User> users) throws SQLException {
+        for (int start = 0; start < users.size(); start += HYDRATION_BATCH_SIZE) {
+            List<User> batch = users.subList(start, Math.min(start + HYDRATION_BATCH_SIZE, users.size()));
+            
+            Map<String, List<String>> isbnsByUser = new HashMap<>();
+            Object[] userIds = new Object[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                userIds[i] = batch.get(i).getUserId();
+                isbnsByUser.put(batch.get(i).getUserId(), new ArrayList<>());
+            }
+            
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT user_id, book_isbn FROM transactions " +
+                         "WHERE is_returned = FALSE AND user_id IN (" + placeholders + ") ORDER BY borrow_date";
+            
+            try (ResultSet rs = dbManager.executeQuery(sql, userIds)) {
+                while (rs.next()) {
+                    isbnsByUser.get(rs.getString("user_id")).add(rs.getString("book_isbn"));
+                }
+            }
+            
+            for (User user : batch) {
+                user.restoreBorrowedBooks(isbnsByUser.get(user.getUserId()));
+            }
+        }
+    }
+    
+    private UserSummary mapResultSetToUserSummary(ResultSet rs) throws SQLException {
+        return new UserSummary(
+            rs.getString("user_id"),
+            rs.getString("name"),
+            rs.getBoolean("is_active"),
+            rs.getInt("borrowed_books_count")
+        );
+    }
+    
     public void insertSampleUsers() {
         User[] sampleUsers = {
             new User("U001", "Alice Johnson", "alice.johnson@email.com", "123-456-7890"),
@@ -0,0 +1,8 @@
+public record UserSummary(String userId, String name, boolean isActive, int borrowedBooksCount) {
+    
+    public String getFormattedInfo() {
+        return String.format("👤 %s (%s) | Books: %d/%d | Status: %s",
+                name, userId, borrowedBooksCount, User.MAX_BOOKS_LIMIT,
+                isActive ? "Active" : "Inactive");
+    }
+}
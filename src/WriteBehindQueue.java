@@ -0,0 +1,304 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Changes acknowledged before they are durable, handed to a writer in batches by one background thread.
+// A slot is reserved before each change is made, so a full queue holds new writers back instead of growing,
+// and each change reaches the writer within roughly maxLagMillis of being added. A batch the writer keeps refusing
+// goes to the dead-letter handler, and the queue stops taking new changes so callers fall back to writing through.
+public class WriteBehindQueue<T> implements AutoCloseable {
+    private static final int MAX_BATCH = 2000;
+    private static final long RETRY_DELAY_MILLIS = 200;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    public static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 10_000;
+    public static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 30_000;
+    
+    // Writes a batch atomically; false leaves it to be tried again
+    public interface BatchWriter<T> {
+        boolean write(List<T> batch);
+    }
+    
+    private record Entry<T>(T item, long addedNanos) {}
+    
+    private final String name;
+    private final int capacity;
+    private final int batchLimit;
+    private final long maxLagMillis;
+    private final BatchWriter<T> writer;
+    private final Consumer<List<T>> deadLetter;
+    private final Semaphore slots;
+    private final Thread flusher;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition itemsAvailable = lock.newCondition();
+    private final Condition itemsCompleted = lock.newCondition();
+    private final ArrayDeque<Entry<T>> pending = new ArrayDeque<>();
+    private volatile boolean closing;
+    private volatile boolean suspended;
+    // Guarded by lock
+    private boolean stopped;
+    private long added;
+    private long completed;
+    private long deadLettered;
+    private long flushTarget;
+    private int batches;
+    private int failedWrites;
+    private long backpressureWaits;
+    private long maxObservedLagMillis;
+    
+    public WriteBehindQueue(String name, int capacity, long maxLagMillis, BatchWriter<T> writer,
+                            Consumer<List<T>> deadLetter) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.batchLimit = Math.min(this.capacity, MAX_BATCH);
+        this.maxLagMillis = Math.max(1, maxLagMillis);
+        this.writer = writer;
+        this.deadLetter = deadLetter;
+        this.slots = new Semaphore(this.capacity);
+        this.flusher = new Thread(this::run, name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    
+    // Call before making the change, and before taking any lock a waiting writer could be holding.
+    // Blocks while the queue is full; false once the queue is closing or suspended, and the caller should write
+    // through instead.
+    public boolean reserve() {
+        if (!isAccepting()) return false;
+        if (!slots.tryAcquire()) {
+            lock.lock();
+            try {
+                backpressureWaits++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (!isAccepting()) {
+            slots.release();
+            return false;
+        }
+        return true;
+    }
+    
+    // Gives back a slot from reserve() when the change was not made after all
+    public void release() {
+        slots.release();
+    }
+    
+    // Adds the change made under a slot from reserve(); the writer sees changes in the order they were added
+    public void add(T item) {
+        lock.lock();
+        try {
+            pending.addLast(new Entry<>(item, System.nanoTime()));
+            added++;
+            if (pending.size() == 1 || pending.size() >= batchLimit) {
+                itemsAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public boolean flush() {
+        return flush(DEFAULT_FLUSH_TIMEOUT_MILLIS);
+    }
+    
+    // Waits until everything added before the call has been written or dead-lettered; false if that took longer
+    // than timeoutMillis. The flusher takes no locks of its own beyond the writer's, so callers may hold theirs.
+    public boolean flush(long timeoutMillis) {
+        lock.lock();
+        try {
+            long target = added;
+            if (completed >= target) return true;
+            flushTarget = Math.max(flushTarget, target);
+            itemsAvailable.signal();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (completed < target) {
+                if (remaining <= 0) return false;
+                try {
+                    remaining = itemsCompleted.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void run() {
+        long lagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        while (true) {
+            List<T> batch = new ArrayList<>();
+            long oldestNanos;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !stopped) {
+                    itemsAvailable.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) return;
+                
+                // Half the lag budget gathers changes to coalesce, the other half is left for the write
+                long deadline = pending.peekFirst().addedNanos() + lagNanos / 2;
+                long remaining;
+                while (pending.size() < batchLimit && !closing && flushTarget <= completed
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        itemsAvailable.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        // Only close() ends the flusher, and it does so through stopped
+                    }
+                }
+                oldestNanos = pending.peekFirst().addedNanos();
+                while (batch.size() < batchLimit && !pending.isEmpty()) {
+                    batch.add(pending.pollFirst().item());
+                }
+            } finally {
+                lock.unlock();
+            }
+            
+            boolean written = write(batch);
+            
+            lock.lock();
+            try {
+                completed += batch.size();
+                if (written) {
+                    batches++;
+                    maxObservedLagMillis = Math.max(maxObservedLagMillis,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestNanos));
+                } else {
+                    deadLettered += batch.size();
+                }
+                itemsCompleted.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            slots.release(batch.size());
+        }
+    }
+    
+    // Retries a few times; after that, or once close() has given up, the batch is dead-lettered instead.
+    // A batch that fails that often points at the database rather than the batch, so new changes write through.
+    private boolean write(List<T> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (writer.write(batch)) return true;
+            } catch (RuntimeException e) {
+                System.err.println("❌ " + name + " write failed: " + e.getMessage());
+            }
+            
+            lock.lock();
+            try {
+                failedWrites++;
+                if (stopped || attempt >= MAX_WRITE_ATTEMPTS) {
+                    System.err.println("❌ " + name + " gave up on " + batch.size() + " changes after " + attempt +
+                            " attempts; new changes write through");
+                    suspended = true;
+                    break;
+                }
+            } finally {
+                lock.unlock();
+            }
+            System.err.println("⚠️ " + name + " batch of " + batch.size() + " not written - retrying (attempt " + attempt + ")");
+            try {
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                // Same as above: the retry loop ends through stopped
+            }
+        }
+        try {
+            deadLetter.accept(batch);
+        } catch (RuntimeException e) {
+            System.err.println("❌ " + name + " dead-letter handler failed: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return (int) (added - completed);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // False once closing, or after a batch was dead-lettered
+    public boolean isAccepting() {
+        return !closing && !suspended;
+    }
+    
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+    
+    public String getSummary() {
+        lock.lock();
+        try {
+            return String.format("%d of %d slots queued, %d changes written in %d batches, max lag %d ms (limit %d ms), " +
+                            "%d waits for room, %d failed writes, %d dead-lettered%s",
+                    added - completed, capacity, completed - deadLettered, batches, maxObservedLagMillis, maxLagMillis,
+                    backpressureWaits, failedWrites, deadLettered, suspended ? " (suspended)" : "");
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT_MILLIS);
+    }
+    
+    // Stops taking changes and writes everything already queued. Holding every slot means no reservation is
+    // still outstanding and nothing is left unwritten; after timeoutMillis each remaining batch gets one more try.
+    public void close(long timeoutMillis) {
+        if (closing) return;
+        closing = true;
+        lock.lock();
+        try {
+            itemsAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        
+        boolean drained;
+        try {
+            drained = slots.tryAcquire(capacity, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        }
+        
+        lock.lock();
+        try {
+            stopped = true;
+            itemsAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (drained) {
+            System.out.println("💾 " + name + " drained: " + getSummary());
+        } else {
+            System.err.println("❌ " + name + " closed before draining: " + getSummary());
+        }
+    }
+}